@@ -0,0 +1,361 @@
+package ru.skillbench.tasks.basics.math;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-length array of complex numbers stored as two primitive arrays: real parts and imaginary parts.<br/>
+ * Unlike <code>ComplexNumber[]</code>, there is no object per element and no interface call per operation:
+ * the bulk operations below are plain counted loops over <code>double[]</code>, which the JIT compiler
+ * can unroll and vectorize.<br/>
+ * Elements are also available as {@link ComplexNumber} views ({@link #get(int)}) that read and write this array,
+ * for code written against the interface.<br/>
+ * Bulk operations change this array and return it, like the operations of {@link ComplexNumberImpl};
+ * the other array must have the same length.
+ */
+public final class ComplexArray {
+    private final double[] re;
+    private final double[] im;
+
+    /**
+     * Creates an array of <code>length</code> zeros.
+     */
+    public ComplexArray(int length) {
+        this(new double[length], new double[length]);
+    }
+
+    /**
+     * Creates an array backed by the given arrays (not copied): changes are visible both ways.
+     *
+     * @throws IllegalArgumentException if the arrays are null or have different lengths
+     */
+    public ComplexArray(double[] re, double[] im) {
+        if (re == null || im == null || re.length != im.length) throw new IllegalArgumentException();
+        this.re = re;
+        this.im = im;
+    }
+
+    /**
+     * Creates an array with the values of the given numbers.
+     */
+    public static ComplexArray of(ComplexNumber... numbers) {
+        ComplexArray result = new ComplexArray(numbers.length);
+        for (int i = 0; i < numbers.length; ++i) {
+            result.re[i] = numbers[i].getRe();
+            result.im[i] = numbers[i].getIm();
+        }
+        return result;
+    }
+
+    public int length() {
+        return re.length;
+    }
+
+    public double getRe(int index) {
+        return re[index];
+    }
+
+    public double getIm(int index) {
+        return im[index];
+    }
+
+    public void set(int index, double re, double im) {
+        this.re[index] = re;
+        this.im[index] = im;
+    }
+
+    /**
+     * @return the real parts (the backing array, not a copy)
+     */
+    public double[] re() {
+        return re;
+    }
+
+    /**
+     * @return the imaginary parts (the backing array, not a copy)
+     */
+    public double[] im() {
+        return im;
+    }
+
+    /**
+     * Returns a view of the element: its getters read this array and its setters and operations
+     * (such as {@link ComplexNumber#add(ComplexNumber)}) write to it.
+     * {@link ComplexNumber#copy()} of a view returns a detached {@link ComplexNumberImpl}.
+     *
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public ComplexNumber get(int index) {
+        if (index < 0 || index >= re.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + re.length);
+        }
+        return new Element(index);
+    }
+
+    /**
+     * @return detached copies of the elements
+     */
+    public ComplexNumber[] toArray() {
+        ComplexNumber[] result = new ComplexNumber[re.length];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = new ComplexNumberImpl(re[i], im[i]);
+        }
+        return result;
+    }
+
+    public ComplexArray copy() {
+        return new ComplexArray(re.clone(), im.clone());
+    }
+
+    /**
+     * Adds the elements of <code>other</code> to the elements of this array.
+     *
+     * @return this array
+     */
+    public ComplexArray add(ComplexArray other) {
+        checkLength(other);
+        double[] re = this.re;
+        double[] im = this.im;
+        double[] otherRe = other.re;
+        double[] otherIm = other.im;
+        for (int i = 0; i < re.length; ++i) {
+            re[i] += otherRe[i];
+            im[i] += otherIm[i];
+        }
+        return this;
+    }
+
+    /**
+     * Multiplies the elements of this array by the elements of <code>other</code>
+     * (see {@link ComplexNumber#multiply(ComplexNumber)}); <code>other</code> may be this array.
+     *
+     * @return this array
+     */
+    public ComplexArray multiply(ComplexArray other) {
+        checkLength(other);
+        double[] re = this.re;
+        double[] im = this.im;
+        double[] otherRe = other.re;
+        double[] otherIm = other.im;
+        for (int i = 0; i < re.length; ++i) {
+            double a = re[i];
+            double b = im[i];
+            double c = otherRe[i];
+            double d = otherIm[i];
+            re[i] = a * c - b * d;
+            im[i] = b * c + a * d;
+        }
+        return this;
+    }
+
+    /**
+     * Changes the sign of both parts of every element.
+     *
+     * @return this array
+     */
+    public ComplexArray negate() {
+        double[] re = this.re;
+        double[] im = this.im;
+        for (int i = 0; i < re.length; ++i) {
+            re[i] = -re[i];
+            im[i] = -im[i];
+        }
+        return this;
+    }
+
+    /**
+     * Multiplies every element by the real <code>factor</code>.
+     *
+     * @return this array
+     */
+    public ComplexArray scale(double factor) {
+        double[] re = this.re;
+        double[] im = this.im;
+        for (int i = 0; i < re.length; ++i) {
+            re[i] *= factor;
+            im[i] *= factor;
+        }
+        return this;
+    }
+
+    /**
+     * Replaces every element a+bi by its conjugate a-bi.
+     *
+     * @return this array
+     */
+    public ComplexArray conjugate() {
+        double[] im = this.im;
+        for (int i = 0; i < im.length; ++i) {
+            im[i] = -im[i];
+        }
+        return this;
+    }
+
+    /**
+     * Returns the absolute values (moduli) of the elements, computed as sqrt(re^2 + im^2)
+     * (unlike {@link Math#hypot(double, double)}, this may overflow for parts above ~1e154, but vectorizes).
+     */
+    public double[] abs() {
+        double[] re = this.re;
+        double[] im = this.im;
+        double[] result = new double[re.length];
+        for (int i = 0; i < re.length; ++i) {
+            result[i] = Math.sqrt(re[i] * re[i] + im[i] * im[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sum of the products of the corresponding elements: x[0]*y[0] + x[1]*y[1] + ...
+     * (without conjugation; for the Hermitian inner product, conjugate a copy of one of the arrays first).
+     */
+    public ComplexNumber dot(ComplexArray other) {
+        checkLength(other);
+        double[] re = this.re;
+        double[] im = this.im;
+        double[] otherRe = other.re;
+        double[] otherIm = other.im;
+        double sumRe = 0.0;
+        double sumIm = 0.0;
+        for (int i = 0; i < re.length; ++i) {
+            sumRe += re[i] * otherRe[i] - im[i] * otherIm[i];
+            sumIm += im[i] * otherRe[i] + re[i] * otherIm[i];
+        }
+        return new ComplexNumberImpl(sumRe, sumIm);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ComplexArray)) {
+            return false;
+        }
+        ComplexArray array = (ComplexArray) other;
+        return Arrays.equals(re, array.re) && Arrays.equals(im, array.im);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(re) + Arrays.hashCode(im);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < re.length; ++i) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(ComplexNumberImpl.toString(re[i], im[i]));
+        }
+        return result.append(']').toString();
+    }
+
+    /**
+     * @return whether the number is a view returned by {@link #get(int)} of some array
+     */
+    static boolean isView(ComplexNumber number) {
+        return number instanceof Element;
+    }
+
+    private void checkLength(ComplexArray other) {
+        if (other.re.length != re.length) {
+            throw new IllegalArgumentException("Length: " + other.re.length + ", expected: " + re.length);
+        }
+    }
+
+    /**
+     * A {@link ComplexNumber} view of one element of the enclosing array.
+     */
+    private final class Element implements ComplexNumber {
+        private final int index;
+
+        Element(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public double getRe() {
+            return re[index];
+        }
+
+        @Override
+        public double getIm() {
+            return im[index];
+        }
+
+        @Override
+        public boolean isReal() {
+            return im[index] == 0.0;
+        }
+
+        @Override
+        public void set(double re, double im) {
+            ComplexArray.this.re[index] = re;
+            ComplexArray.this.im[index] = im;
+        }
+
+        @Override
+        public void set(String value) throws NumberFormatException {
+            ComplexNumberImpl.parse(value, 0, value.length(), this);
+        }
+
+        @Override
+        public ComplexNumber copy() {
+            return new ComplexNumberImpl(re[index], im[index]);
+        }
+
+        @Override
+        public ComplexNumber clone() {
+            return copy();
+        }
+
+        @Override
+        public int compareTo(ComplexNumber other) {
+            return ComplexNumberImpl.compare(re[index], im[index], other);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ComplexNumber && compareTo((ComplexNumber) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            double a = re[index];
+            double b = im[index];
+            return Double.hashCode(a * a + b * b);
+        }
+
+        @Override
+        public String toString() {
+            return ComplexNumberImpl.toString(re[index], im[index]);
+        }
+
+        @Override
+        public void sort(ComplexNumber[] array) {
+            ComplexNumberImpl.sortByModulus(array);
+        }
+
+        @Override
+        public ComplexNumber negate() {
+            set(-re[index], -im[index]);
+            return this;
+        }
+
+        @Override
+        public ComplexNumber add(ComplexNumber arg2) {
+            set(re[index] + arg2.getRe(), im[index] + arg2.getIm());
+            return this;
+        }
+
+        @Override
+        public ComplexNumber multiply(ComplexNumber arg2) {
+            double a = re[index];
+            double b = im[index];
+            set(a * arg2.getRe() - b * arg2.getIm(), b * arg2.getRe() + a * arg2.getIm());
+            return this;
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package ru.skillbench.tasks.basics.math;
 
 import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class ComplexNumberImpl implements ComplexNumber{
+    /**
+     * Powers of ten that are exact doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /**
+     * Integers up to 2^53 are exact doubles.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
 
     private double re = 0.0;
     private double im = 0.0;
@@ -70,51 +79,141 @@ public class ComplexNumberImpl implements ComplexNumber{
      */
     @Override
     public void set(String value) throws NumberFormatException {
-        if (value.endsWith("i")) {
-            Pattern pattern = Pattern.compile("([+-]?\\d*\\.?\\d*)([+-]?\\d*\\.?\\d*)i",
-                    Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-            Matcher matcher = pattern.matcher(value);
-
-            if(matcher.matches()) {
-                String reStr = matcher.group(1);
-                String imStr = matcher.group(2);
-
-                if (reStr.equals("-")) {
-                    re = 0.0;
-                    im = -1.0;
-                } else if (reStr.equals("+")) {
-                    re = 0.0;
-                    im = 1.0;
-                } else {
-                    re = Double.parseDouble(reStr);
-
-                    if (imStr.equals("")) {
-                        im = re;
-                        re = 0.0;
-                    } else if (imStr.equals("-")) {
-                        im = -1.0;
-                    } else if (imStr.equals("+")) {
-                        im = 1.0;
-                    } else {
-                        im = Double.parseDouble(imStr);
-                    }
-                }
-            } else {
-                throw new NumberFormatException();
+        set(value, 0, value.length());
+    }
+
+    /**
+     * Parses the characters <code>value[start, end)</code> exactly like {@link #set(String)} parses
+     * <code>value.subSequence(start, end)</code>, but without creating substrings (e.g. for numbers read
+     * from a large buffer).<br/>
+     * The grammar is the one of the former regex <code>([+-]?\d*\.?\d*)([+-]?\d*\.?\d*)i</code>
+     * (or <code>[+-]?\d*\.?\d*</code> without the trailing 'i'): the real part is the longest prefix
+     * that looks like a number, and the rest (before 'i') must look like a number too.
+     * The string is scanned once; numbers with at most 15-16 significant digits and 22 fraction digits
+     * are converted without {@link Double#parseDouble(String)}, giving exactly the same (correctly rounded) value.<br/>
+     * The number is changed only if the whole string is correct.
+     *
+     * @throws NumberFormatException if the given characters are incorrect
+     * @throws IndexOutOfBoundsException if <code>start</code> or <code>end</code> is out of range
+     */
+    public void set(CharSequence value, int start, int end) throws NumberFormatException {
+        parse(value, start, end, this);
+    }
+
+    /**
+     * Parses <code>value[start, end)</code> as {@link #set(CharSequence, int, int)} does and passes the result
+     * to <code>target.set(re, im)</code> (only if the whole string is correct).
+     */
+    static void parse(CharSequence value, int start, int end, ComplexNumber target) throws NumberFormatException {
+        if (start < 0 || end > value.length() || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + value.length());
+        }
+
+        boolean imaginary = end > start && value.charAt(end - 1) == 'i';
+        int body = imaginary ? end - 1 : end;
+        int split = scanNumber(value, start, body);
+        if (!imaginary) {
+            if (split != end) {
+                throw invalid(value, start, end);
             }
-        } else {
-            Pattern pattern = Pattern.compile("([+-]?\\d*\\.?\\d*)",
-                    Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-            Matcher matcher = pattern.matcher(value);
+            target.set(parseNumber(value, start, end), 0.0);
+            return;
+        }
+        if (scanNumber(value, split, body) != body) {
+            throw invalid(value, start, end);
+        }
 
-            if(matcher.matches()) {
-                re = Double.parseDouble(matcher.group(1));
-                im = 0.0;
+        if (split == start) {
+            // "i" alone: the empty real part is not a number, so the regex version threw here
+            target.set(0.0, 1.0);
+        } else if (split - start == 1 && isSign(value.charAt(start))) {
+            // "-i", "+i"; as in the regex version, the rest of the string is ignored then (e.g. "-+2i" is -i)
+            target.set(0.0, value.charAt(start) == '-' ? -1.0 : 1.0);
+        } else {
+            double first = parseNumber(value, start, split);
+            if (split == body) {
+                target.set(0.0, first);
+            } else if (body - split == 1 && isSign(value.charAt(split))) {
+                target.set(first, value.charAt(split) == '-' ? -1.0 : 1.0);
             } else {
-                throw new NumberFormatException();
+                target.set(first, parseNumber(value, split, body));
+            }
+        }
+    }
+
+    private static boolean isSign(char c) {
+        return c == '+' || c == '-';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the end of the longest prefix of <code>value[start, end)</code> matching <code>[+-]?\d*\.?\d*</code>
+     */
+    private static int scanNumber(CharSequence value, int start, int end) {
+        int i = start;
+        if (i < end && isSign(value.charAt(i))) {
+            ++i;
+        }
+        while (i < end && isDigit(value.charAt(i))) {
+            ++i;
+        }
+        if (i < end && value.charAt(i) == '.') {
+            ++i;
+        }
+        while (i < end && isDigit(value.charAt(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    /**
+     * Converts <code>value[start, end)</code>, which matches <code>[+-]?\d*\.?\d*</code>, to double.<br/>
+     * If the digits form an integer mantissa below 2^53 with at most 22 fraction digits, both the mantissa
+     * and the power of ten are exact doubles, so their (correctly rounded) quotient is exactly what
+     * {@link Double#parseDouble(String)} returns. Longer numbers are passed to {@link Double#parseDouble(String)}.
+     */
+    private static double parseNumber(CharSequence value, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && isSign(value.charAt(i))) {
+            negative = value.charAt(i) == '-';
+            ++i;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        boolean digits = false;
+        boolean fraction = false;
+        boolean exact = true;
+        for (; i < end; ++i) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
             }
+            digits = true;
+            if (fraction) {
+                ++scale;
+            }
+            if (exact) {
+                mantissa = mantissa * 10 + (c - '0');
+                exact = mantissa < MAX_EXACT_MANTISSA;
+            }
+        }
+        if (!digits) {
+            throw invalid(value, start, end);
         }
+        if (!exact || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(value.subSequence(start, end).toString());
+        }
+        double result = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -result : result;
+    }
 
+    private static NumberFormatException invalid(CharSequence value, int start, int end) {
+        return new NumberFormatException("For input string: \"" + value.subSequence(start, end) + "\"");
     }
 
     /**
@@ -157,6 +256,13 @@ public class ComplexNumberImpl implements ComplexNumber{
      */
     @Override
     public String toString() {
+        return toString(re, im);
+    }
+
+    /**
+     * The string representation of {@link #toString()} for the given parts (shared with {@link ComplexArray} views).
+     */
+    static String toString(double re, double im) {
         StringBuilder result = new StringBuilder();
 
         if (im == 0.0) {
@@ -199,6 +305,13 @@ public class ComplexNumberImpl implements ComplexNumber{
      */
     @Override
     public int compareTo(ComplexNumber other) {
+        return compare(re, im, other);
+    }
+
+    /**
+     * The comparison of {@link #compareTo(ComplexNumber)} for the given parts (shared with {@link ComplexArray} views).
+     */
+    static int compare(double re, double im, ComplexNumber other) {
         double otherRe = other.getRe();
         double otherIm = other.getIm();
         double result = (re*re + im*im) - (otherRe*otherRe + otherIm*otherIm);
@@ -224,7 +337,15 @@ public class ComplexNumberImpl implements ComplexNumber{
      */
     @Override
     public void sort(ComplexNumber[] array) {
-        Arrays.sort(array, ComplexNumber::compareTo);
+        sortByModulus(array);
+    }
+
+    /**
+     * The implementation of {@link #sort(ComplexNumber[])} (shared with {@link ComplexArray} views):
+     * a stable sort that computes the modulus of every element once (see {@link ModulusSort}).
+     */
+    static void sortByModulus(ComplexNumber[] array) {
+        ModulusSort.sort(array);
     }
 
     /**
@@ -0,0 +1,262 @@
+package ru.skillbench.tasks.basics.math;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fast Fourier transform of complex sequences stored in {@link ComplexArray} (or in two <code>double[]</code> arrays).<br/>
+ * The forward transform is X[k] = sum of x[j]*e^(-2*pi*i*j*k/n) over j; the inverse transform divides by n,
+ * so <code>inverse(transform(x))</code> returns x (up to rounding).<br/>
+ * Power-of-two lengths use the in-place iterative radix-2 algorithm (bit-reversal permutation and butterflies);
+ * other lengths use Bluestein's algorithm, which rewrites the transform as a convolution computed by
+ * power-of-two transforms of length at least 2n-1. Both run in O(n log n).<br/>
+ * Twiddle factors (and Bluestein's chirp and its transform) are computed directly with sin/cos, not by recurrence,
+ * and are cached per length, so repeated transforms of the same length do not recompute them.
+ * All methods are thread-safe.
+ */
+public final class FFT {
+    /**
+     * How many Bluestein lengths are cached (power-of-two tables are few and all are kept).
+     */
+    private static final int BLUESTEIN_CACHE_SIZE = 16;
+
+    private static final Map<Integer, Twiddles> TWIDDLES = new ConcurrentHashMap<>();
+    private static final Map<Integer, Bluestein> BLUESTEIN = new LinkedHashMap<Integer, Bluestein>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Bluestein> eldest) {
+            return size() > BLUESTEIN_CACHE_SIZE;
+        }
+    };
+
+    private FFT() {
+    }
+
+    /**
+     * Replaces <code>data</code> with its forward transform.
+     */
+    public static void transform(ComplexArray data) {
+        transform(data.re(), data.im());
+    }
+
+    /**
+     * Replaces <code>data</code> with its inverse transform.
+     */
+    public static void inverse(ComplexArray data) {
+        inverse(data.re(), data.im());
+    }
+
+    /**
+     * @return the forward transform of the given numbers (the numbers are not changed)
+     */
+    public static ComplexNumber[] transform(ComplexNumber[] data) {
+        ComplexArray array = ComplexArray.of(data);
+        transform(array);
+        return array.toArray();
+    }
+
+    /**
+     * @return the inverse transform of the given numbers (the numbers are not changed)
+     */
+    public static ComplexNumber[] inverse(ComplexNumber[] data) {
+        ComplexArray array = ComplexArray.of(data);
+        inverse(array);
+        return array.toArray();
+    }
+
+    /**
+     * Replaces the sequence (re[k] + im[k]*i) with its forward transform.
+     *
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public static void transform(double[] re, double[] im) {
+        if (re.length != im.length) throw new IllegalArgumentException();
+        int n = re.length;
+        if (n <= 1) {
+            return;
+        }
+        if ((n & (n - 1)) == 0) {
+            radix2(re, im, twiddles(n));
+        } else {
+            bluestein(re, im);
+        }
+    }
+
+    /**
+     * Replaces the sequence (re[k] + im[k]*i) with its inverse transform: conj(transform(conj(x))) / n.
+     *
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public static void inverse(double[] re, double[] im) {
+        if (re.length != im.length) throw new IllegalArgumentException();
+        int n = re.length;
+        for (int k = 0; k < n; ++k) {
+            im[k] = -im[k];
+        }
+        transform(re, im);
+        double scale = 1.0 / n;
+        for (int k = 0; k < n; ++k) {
+            re[k] *= scale;
+            im[k] = -im[k] * scale;
+        }
+    }
+
+    private static Twiddles twiddles(int n) {
+        return TWIDDLES.computeIfAbsent(n, Twiddles::new);
+    }
+
+    private static Bluestein bluestein(int n) {
+        synchronized (BLUESTEIN) {
+            Bluestein result = BLUESTEIN.get(n);
+            if (result != null) {
+                return result;
+            }
+        }
+        // the plan (which includes a transform of length m) is built without the lock, so transforms of other
+        // lengths are not blocked; if two threads build the same plan, the first one published is kept
+        Bluestein plan = new Bluestein(n);
+        synchronized (BLUESTEIN) {
+            Bluestein result = BLUESTEIN.putIfAbsent(n, plan);
+            return result != null ? result : plan;
+        }
+    }
+
+    /**
+     * In-place radix-2 transform; <code>re.length</code> is a power of two.
+     */
+    private static void radix2(double[] re, double[] im, Twiddles twiddles) {
+        int n = re.length;
+        // bit-reversal permutation
+        for (int i = 1, j = 0; i < n; ++i) {
+            int bit = n >>> 1;
+            for (; (j & bit) != 0; bit >>>= 1) {
+                j ^= bit;
+            }
+            j |= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        double[] cos = twiddles.cos;
+        double[] sin = twiddles.sin;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >>> 1;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int j = 0, k = 0; j < half; ++j, k += step) {
+                    int a = start + j;
+                    int b = a + half;
+                    // w = e^(-2*pi*i*k/n) = cos - i*sin
+                    double wr = cos[k];
+                    double wi = -sin[k];
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * Bluestein's algorithm: since j*k = (j^2 + k^2 - (k-j)^2) / 2, X[k] = w[k] * sum of (x[j]*w[j]) * conj(w[k-j]),
+     * where w[k] = e^(-pi*i*k^2/n). The sum is a convolution, computed with power-of-two transforms.
+     */
+    private static void bluestein(double[] re, double[] im) {
+        int n = re.length;
+        Bluestein plan = bluestein(n);
+        int m = plan.filterRe.length;
+        double[] aRe = new double[m];
+        double[] aIm = new double[m];
+        for (int k = 0; k < n; ++k) {
+            double c = plan.chirpRe[k];
+            double s = plan.chirpIm[k];
+            aRe[k] = re[k] * c - im[k] * s;
+            aIm[k] = re[k] * s + im[k] * c;
+        }
+        Twiddles twiddles = twiddles(m);
+        radix2(aRe, aIm, twiddles);
+        double[] filterRe = plan.filterRe;
+        double[] filterIm = plan.filterIm;
+        for (int k = 0; k < m; ++k) {
+            double r = aRe[k] * filterRe[k] - aIm[k] * filterIm[k];
+            double i = aRe[k] * filterIm[k] + aIm[k] * filterRe[k];
+            // the inverse transform is conj(FFT(conj(x))) / m
+            aRe[k] = r;
+            aIm[k] = -i;
+        }
+        radix2(aRe, aIm, twiddles);
+        double scale = 1.0 / m;
+        for (int k = 0; k < n; ++k) {
+            double r = aRe[k] * scale;
+            double i = -aIm[k] * scale;
+            double c = plan.chirpRe[k];
+            double s = plan.chirpIm[k];
+            re[k] = r * c - i * s;
+            im[k] = r * s + i * c;
+        }
+    }
+
+    /**
+     * cos and sin of 2*pi*k/n for k &lt; n/2.
+     */
+    private static final class Twiddles {
+        final double[] cos;
+        final double[] sin;
+
+        Twiddles(int n) {
+            cos = new double[n / 2];
+            sin = new double[n / 2];
+            for (int k = 0; k < n / 2; ++k) {
+                double angle = 2 * Math.PI * k / n;
+                cos[k] = Math.cos(angle);
+                sin[k] = Math.sin(angle);
+            }
+        }
+    }
+
+    /**
+     * The chirp w[k] = e^(-pi*i*k^2/n) and the transform of the convolution filter conj(w[|k|]) of length m.
+     */
+    private static final class Bluestein {
+        final double[] chirpRe;
+        final double[] chirpIm;
+        final double[] filterRe;
+        final double[] filterIm;
+
+        Bluestein(int n) {
+            chirpRe = new double[n];
+            chirpIm = new double[n];
+            for (int k = 0; k < n; ++k) {
+                // k^2 mod 2n keeps the angle small (and exact for large k)
+                long square = (long) k * k % (2L * n);
+                double angle = Math.PI * square / n;
+                chirpRe[k] = Math.cos(angle);
+                chirpIm[k] = -Math.sin(angle);
+            }
+            int m = Integer.highestOneBit(2 * n - 1);
+            if (m < 2 * n - 1) {
+                m <<= 1;
+            }
+            filterRe = new double[m];
+            filterIm = new double[m];
+            filterRe[0] = chirpRe[0];
+            filterIm[0] = -chirpIm[0];
+            for (int k = 1; k < n; ++k) {
+                filterRe[k] = filterRe[m - k] = chirpRe[k];
+                filterIm[k] = filterIm[m - k] = -chirpIm[k];
+            }
+            radix2(filterRe, filterIm, twiddles(m));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ru.skillbench.tasks.basics.math;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable sort of complex numbers by modulus that computes every key (re^2 + im^2) once.<br/>
+ * The keys and the original indices are sorted together as primitive arrays by a merge sort
+ * (in parallel in the common {@link ForkJoinPool} for large arrays), then the array is permuted.
+ * Equal keys keep their original order, so the result is the same as that of a stable sort
+ * with {@link ComplexNumberImpl#compare(double, double, ComplexNumber)}.<br/>
+ * The keys are used only when every element compares by that rule (a {@link ComplexNumberImpl}
+ * or a {@link ComplexArray} view) and no key is NaN (with NaN the rule is not an order);
+ * otherwise the array is sorted with {@link ComplexNumber#compareTo(Object)} as before.
+ */
+final class ModulusSort {
+    /**
+     * Ranges up to this length are sorted by insertion.
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    /**
+     * Ranges up to this length are not split between threads (the granularity of {@link Arrays#parallelSort(double[])}).
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private ModulusSort() {
+    }
+
+    static void sort(ComplexNumber[] array) {
+        int n = array.length;
+        if (n < 2) {
+            return;
+        }
+        double[] keys = new double[n];
+        int[] indices = new int[n];
+        for (int i = 0; i < n; ++i) {
+            ComplexNumber number = array[i];
+            if (number == null || (number.getClass() != ComplexNumberImpl.class && !ComplexArray.isView(number))) {
+                Arrays.sort(array, ComplexNumber::compareTo);
+                return;
+            }
+            double re = number.getRe();
+            double im = number.getIm();
+            double key = re*re + im*im;
+            if (Double.isNaN(key)) {
+                Arrays.sort(array, ComplexNumber::compareTo);
+                return;
+            }
+            keys[i] = key;
+            indices[i] = i;
+        }
+
+        double[] keyBuffer = new double[n];
+        int[] indexBuffer = new int[n];
+        if (n > PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            new SortTask(keys, indices, keyBuffer, indexBuffer, 0, n).invoke();
+        } else {
+            sort(keys, indices, keyBuffer, indexBuffer, 0, n);
+        }
+
+        ComplexNumber[] numbers = array.clone();
+        for (int i = 0; i < n; ++i) {
+            array[i] = numbers[indices[i]];
+        }
+    }
+
+    /**
+     * Sorts keys[from, to) and moves indices[from, to) along; the buffers are used for merging.
+     */
+    private static void sort(double[] keys, int[] indices, double[] keyBuffer, int[] indexBuffer, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, indices, from, to);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(keys, indices, keyBuffer, indexBuffer, from, middle);
+        sort(keys, indices, keyBuffer, indexBuffer, middle, to);
+        merge(keys, indices, keyBuffer, indexBuffer, from, middle, to);
+    }
+
+    private static void insertionSort(double[] keys, int[] indices, int from, int to) {
+        for (int i = from + 1; i < to; ++i) {
+            double key = keys[i];
+            int index = indices[i];
+            int j = i - 1;
+            // strict comparison: an element never moves before an equal one
+            for (; j >= from && keys[j] > key; --j) {
+                keys[j + 1] = keys[j];
+                indices[j + 1] = indices[j];
+            }
+            keys[j + 1] = key;
+            indices[j + 1] = index;
+        }
+    }
+
+    /**
+     * Merges the sorted ranges [from, middle) and [middle, to); on equal keys the left one goes first.
+     */
+    private static void merge(double[] keys, int[] indices, double[] keyBuffer, int[] indexBuffer,
+                              int from, int middle, int to) {
+        if (keys[middle - 1] <= keys[middle]) {
+            return; // already in order
+        }
+        System.arraycopy(keys, from, keyBuffer, from, to - from);
+        System.arraycopy(indices, from, indexBuffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; ++i) {
+            if (right >= to || (left < middle && keyBuffer[left] <= keyBuffer[right])) {
+                keys[i] = keyBuffer[left];
+                indices[i] = indexBuffer[left++];
+            } else {
+                keys[i] = keyBuffer[right];
+                indices[i] = indexBuffer[right++];
+            }
+        }
+    }
+
+    /**
+     * The parallel merge sort: the halves are sorted concurrently, then merged.
+     */
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] keys;
+        private final int[] indices;
+        private final double[] keyBuffer;
+        private final int[] indexBuffer;
+        private final int from;
+        private final int to;
+
+        SortTask(double[] keys, int[] indices, double[] keyBuffer, int[] indexBuffer, int from, int to) {
+            this.keys = keys;
+            this.indices = indices;
+            this.keyBuffer = keyBuffer;
+            this.indexBuffer = indexBuffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                sort(keys, indices, keyBuffer, indexBuffer, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortTask(keys, indices, keyBuffer, indexBuffer, from, middle),
+                    new SortTask(keys, indices, keyBuffer, indexBuffer, middle, to));
+            merge(keys, indices, keyBuffer, indexBuffer, from, middle, to);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.util.*;
+
+/**
+ * Список дочерних узлов на массиве. Каждый дочерний {@link TreeNodeImpl} помнит номер своей ячейки
+ *  ({@link TreeNodeImpl#slot}), поэтому удаление узла по ссылке не требует поиска.<br/>
+ * Удаление с сохранением порядка оставляет в ячейке "надгробие" (<code>null</code>);
+ *  когда надгробий становится больше, чем живых узлов, массив уплотняется (с сохранением порядка).
+ *  Удаление без сохранения порядка переносит в освободившуюся ячейку последний узел.<br/>
+ * Доступ по позиции - O(1), если надгробий нет; иначе массив сначала уплотняется.
+ */
+final class ChildList implements Iterable<TreeNode> {
+    private static final int MIN_CAPACITY = 4;
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 16;
+
+    private final TreeNodeImpl owner;
+    private TreeNode[] slots;
+    /**
+     * Число занятых ячеек, включая надгробия.
+     */
+    private int end;
+    private int size;
+    private int modCount;
+    /**
+     * Число уплотнений: уплотнение не меняет порядок узлов, поэтому итераторы его переживают.
+     */
+    private int compactions;
+
+    ChildList(TreeNodeImpl owner) {
+        this(owner, MIN_CAPACITY);
+    }
+
+    ChildList(TreeNodeImpl owner, int capacity) {
+        this.owner = owner;
+        this.slots = new TreeNode[Math.max(MIN_CAPACITY, capacity)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(TreeNode child) {
+        if (end == slots.length) {
+            if (end - size >= slots.length / 4) {
+                compact();
+            } else {
+                slots = Arrays.copyOf(slots, slots.length * 2);
+            }
+        }
+        setSlot(child, end);
+        slots[end++] = child;
+        ++size;
+        ++modCount;
+    }
+
+    /**
+     * Находит ячейку узла: для {@link TreeNodeImpl} - сразу по запомненному номеру,
+     *  иначе (или если номер устарел) - первый узел, равный <code>child</code> по {@link Object#equals(Object)}.
+     * @return номер ячейки или -1, если узла в списке нет
+     */
+    int slotOf(TreeNode child) {
+        if (child instanceof TreeNodeImpl) {
+            int slot = ((TreeNodeImpl) child).slot;
+            if (slot >= 0 && slot < end && slots[slot] == child) {
+                return slot;
+            }
+        }
+        for (int i = 0; i < end; ++i) {
+            if (slots[i] != null && slots[i].equals(child)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    TreeNode getSlot(int slot) {
+        return slots[slot];
+    }
+
+    /**
+     * Удаляет узел из ячейки <code>slot</code>.
+     * @param preserveOrder <code>true</code> - оставить надгробие, <code>false</code> - перенести на его место последний узел
+     */
+    void remove(int slot, boolean preserveOrder) {
+        setSlot(slots[slot], -1);
+        slots[slot] = null;
+        --size;
+        ++modCount;
+        if (!preserveOrder) {
+            trimTombstones();
+            if (slot < end) {
+                TreeNode last = slots[--end];
+                slots[end] = null;
+                slots[slot] = last;
+                setSlot(last, slot);
+            }
+        }
+        trimTombstones();
+        if (end - size > Math.max(MIN_TOMBSTONES_TO_COMPACT, size)) {
+            compact();
+        }
+    }
+
+    /**
+     * @return узел в позиции <code>index</code> (надгробия не считаются)
+     */
+    TreeNode get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        if (end != size) {
+            compact();
+        }
+        return slots[index];
+    }
+
+    /**
+     * @return позиция узла (надгробия не считаются) или -1, если узла в списке нет
+     */
+    int indexOf(TreeNode child) {
+        int slot = slotOf(child);
+        if (slot < 0) {
+            return -1;
+        }
+        if (end != size) {
+            compact();
+            slot = slotOf(child);
+        }
+        return slot;
+    }
+
+    @Override
+    public Iterator<TreeNode> iterator() {
+        return new Iterator<TreeNode>() {
+            private int next = skipTombstones(0);
+            private int last = -1;
+            /**
+             * Число узлов списка перед <code>next</code>: после уплотнения это и есть номер ячейки <code>next</code>.
+             */
+            private int passed;
+            private int expectedModCount = modCount;
+            private int expectedCompactions = compactions;
+
+            @Override
+            public boolean hasNext() {
+                sync();
+                return next < end;
+            }
+
+            @Override
+            public TreeNode next() {
+                sync();
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                if (next >= end) throw new NoSuchElementException();
+                last = next;
+                next = skipTombstones(next + 1);
+                ++passed;
+                return slots[last];
+            }
+
+            private void sync() {
+                if (compactions != expectedCompactions) {
+                    expectedCompactions = compactions;
+                    next = passed;
+                    last = last < 0 ? -1 : passed - 1;
+                }
+            }
+
+            /**
+             * Удаляет узел так же, как {@link TreeNodeImpl#removeChild(TreeNode)}, но всегда с надгробием,
+             *  чтобы не сдвигать еще не пройденные узлы.
+             */
+            @Override
+            public void remove() {
+                sync();
+                if (last < 0) throw new IllegalStateException();
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                TreeNode removed = slots[last];
+                owner.detach(removed);
+                setSlot(removed, -1);
+                slots[last] = null;
+                --size;
+                expectedModCount = ++modCount;
+                --passed;
+                last = -1;
+            }
+        };
+    }
+
+    private int skipTombstones(int slot) {
+        while (slot < end && slots[slot] == null) {
+            ++slot;
+        }
+        return slot;
+    }
+
+    private void trimTombstones() {
+        while (end > 0 && slots[end - 1] == null) {
+            --end;
+        }
+    }
+
+    private void compact() {
+        int j = 0;
+        for (int i = 0; i < end; ++i) {
+            TreeNode child = slots[i];
+            if (child != null) {
+                slots[j] = child;
+                setSlot(child, j++);
+            }
+        }
+        Arrays.fill(slots, j, end, null);
+        end = j;
+        ++compactions;
+    }
+
+    private static void setSlot(TreeNode child, int slot) {
+        if (child instanceof TreeNodeImpl) {
+            ((TreeNodeImpl) child).slot = slot;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.util.*;
+
+/**
+ * Компактное хранилище узлов дерева: вместо объекта на каждый узел - "структура массивов".
+ *  Узел - это номер ячейки, а его родитель, первый и последний дети, соседние братья и число детей хранятся
+ *  в массивах <code>int[]</code>, объекты данных - в <code>Object[]</code>, признаки развернутости - в {@link BitSet}.
+ *  На узел приходится около 30 байт (против заголовков объектов, ссылок и списка детей у {@link TreeNodeImpl}).<br/>
+ * Узлы доступны через легковесные представления {@link Node}, реализующие {@link TreeNode}: представление создается
+ *  при каждом обращении (например, в {@link TreeNode#getParent()}), поэтому представления сравниваются
+ *  по {@link Node#equals(Object)}, а не по ссылке.<br/>
+ * В одном хранилище может быть несколько деревьев: узел без родителя - корень своего дерева.
+ *  Связывать можно только узлы одного хранилища. Хранилище не потокобезопасно.
+ */
+public final class CompactTree {
+    private static final int NONE = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] parent;
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] nextSibling;
+    private int[] prevSibling;
+    private int[] childCount;
+    private Object[] data;
+    private final BitSet expanded = new BitSet();
+    /**
+     * Число использованных ячеек (включая освобожденные).
+     */
+    private int end;
+    private int size;
+    /**
+     * Список освобожденных ячеек, связанный через <code>nextSibling</code>.
+     */
+    private int free = NONE;
+    private int modCount;
+
+    public CompactTree() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param capacity Ожидаемое число узлов (массивы сразу создаются такого размера)
+     */
+    public CompactTree(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException();
+        capacity = Math.max(MIN_CAPACITY, capacity);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        prevSibling = new int[capacity];
+        childCount = new int[capacity];
+        data = new Object[capacity];
+    }
+
+    /**
+     * Создает в хранилище новый узел без родителя.
+     */
+    public Node createNode(Object data) {
+        int id;
+        if (free != NONE) {
+            id = free;
+            free = nextSibling[id];
+        } else {
+            if (end == parent.length) {
+                grow();
+            }
+            id = end++;
+        }
+        parent[id] = NONE;
+        firstChild[id] = NONE;
+        lastChild[id] = NONE;
+        nextSibling[id] = NONE;
+        prevSibling[id] = NONE;
+        childCount[id] = 0;
+        this.data[id] = data;
+        ++size;
+        return new Node(id);
+    }
+
+    /**
+     * Освобождает ячейки всего поддерева узла без родителя (например, после {@link TreeNode#removeChild(TreeNode)}),
+     *  чтобы их заняли новые узлы. Представления освобожденных узлов использовать больше нельзя.
+     * @throws IllegalArgumentException если узел из другого хранилища или у него есть родитель
+     */
+    public void release(TreeNode root) {
+        int id = own(root);
+        if (parent[id] != NONE) throw new IllegalArgumentException();
+
+        // обратный порядок обхода: ячейка освобождается после всех своих потомков,
+        // поэтому связи еще не освобожденных предков целы
+        int node = leftmostLeaf(id);
+        while (node != NONE) {
+            int next = node == id ? NONE
+                    : nextSibling[node] != NONE ? leftmostLeaf(nextSibling[node]) : parent[node];
+            data[node] = null;
+            expanded.clear(node);
+            parent[node] = NONE;
+            nextSibling[node] = free;
+            free = node;
+            --size;
+            node = next;
+        }
+        ++modCount;
+    }
+
+    /**
+     * @return число узлов в хранилище
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Счетчик изменений связей узлов (см. {@link TreeAncestry}).
+     */
+    int modCount() {
+        return modCount;
+    }
+
+    private void grow() {
+        int capacity = parent.length * 2;
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        prevSibling = Arrays.copyOf(prevSibling, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        data = Arrays.copyOf(data, capacity);
+    }
+
+    private int own(TreeNode node) {
+        if (!(node instanceof Node) || ((Node) node).tree() != this) throw new IllegalArgumentException();
+        return ((Node) node).id;
+    }
+
+    private int leftmostLeaf(int node) {
+        while (firstChild[node] != NONE) {
+            node = firstChild[node];
+        }
+        return node;
+    }
+
+    private Node view(int id) {
+        return id == NONE ? null : new Node(id);
+    }
+
+    /**
+     * Следующий узел поддерева <code>root</code> в прямом порядке обхода (без стека: вниз по первым детям,
+     *  затем к следующему брату ближайшего предка, у которого он есть).
+     */
+    private int preOrderNext(int node, int root) {
+        if (firstChild[node] != NONE) {
+            return firstChild[node];
+        }
+        while (node != root) {
+            if (nextSibling[node] != NONE) {
+                return nextSibling[node];
+            }
+            node = parent[node];
+        }
+        return NONE;
+    }
+
+    /**
+     * Переносит узел в конец списка детей <code>newParent</code> (или делает корнем, если <code>NONE</code>).
+     */
+    private void move(int id, int newParent) {
+        if (parent[id] == newParent) {
+            return;
+        }
+        unlink(id);
+        if (newParent != NONE) {
+            int last = lastChild[newParent];
+            prevSibling[id] = last;
+            if (last == NONE) {
+                firstChild[newParent] = id;
+            } else {
+                nextSibling[last] = id;
+            }
+            lastChild[newParent] = id;
+            ++childCount[newParent];
+            parent[id] = newParent;
+        }
+        ++modCount;
+    }
+
+    private void unlink(int id) {
+        int p = parent[id];
+        if (p == NONE) {
+            return;
+        }
+        int prev = prevSibling[id];
+        int next = nextSibling[id];
+        if (prev == NONE) {
+            firstChild[p] = next;
+        } else {
+            nextSibling[prev] = next;
+        }
+        if (next == NONE) {
+            lastChild[p] = prev;
+        } else {
+            prevSibling[next] = prev;
+        }
+        --childCount[p];
+        parent[id] = NONE;
+        prevSibling[id] = NONE;
+        nextSibling[id] = NONE;
+    }
+
+    /**
+     * Легковесное представление узла {@link CompactTree}: хранит только ссылку на хранилище и номер ячейки.
+     * <p/>
+     * В отличие от {@link TreeNodeImpl}, {@link #setParent(TreeNode)} не только запоминает родителя,
+     *  но и переносит узел в список детей нового родителя (связи "родитель - дети" хранятся в общих массивах
+     *  и не могут расходиться), так что {@link #addChild(TreeNode)} переносит узел из прежнего родителя.
+     */
+    public final class Node implements TreeNode {
+        private final int id;
+
+        private Node(int id) {
+            this.id = id;
+        }
+
+        /**
+         * @return хранилище, в котором находится узел
+         */
+        public CompactTree tree() {
+            return CompactTree.this;
+        }
+
+        @Override
+        public TreeNode getParent() {
+            return view(parent[id]);
+        }
+
+        /**
+         * @throws IllegalArgumentException если <code>parent</code> не из этого хранилища
+         */
+        @Override
+        public void setParent(TreeNode parent) {
+            move(id, parent == null ? NONE : own(parent));
+        }
+
+        @Override
+        public TreeNode getRoot() {
+            if (parent[id] == NONE) {
+                return null;
+            }
+            int root = id;
+            while (parent[root] != NONE) {
+                root = parent[root];
+            }
+            return new Node(root);
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return childCount[id] == 0;
+        }
+
+        @Override
+        public int getChildCount() {
+            return childCount[id];
+        }
+
+        @Override
+        public Iterator<TreeNode> getChildrenIterator() {
+            return new Iterator<TreeNode>() {
+                private int next = firstChild[id];
+                private int last = NONE;
+                private int expectedModCount = modCount;
+
+                @Override
+                public boolean hasNext() {
+                    return next != NONE;
+                }
+
+                @Override
+                public TreeNode next() {
+                    if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                    if (next == NONE) throw new NoSuchElementException();
+                    last = next;
+                    next = nextSibling[next];
+                    return new Node(last);
+                }
+
+                @Override
+                public void remove() {
+                    if (last == NONE) throw new IllegalStateException();
+                    if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                    move(last, NONE);
+                    expectedModCount = modCount;
+                    last = NONE;
+                }
+            };
+        }
+
+        /**
+         * @throws IllegalArgumentException если <code>child</code> не из этого хранилища
+         */
+        @Override
+        public void addChild(TreeNode child) {
+            int childId = own(child);
+            if (parent[childId] == id) {
+                // уже ребенок этого узла: переносим в конец, как при добавлении
+                unlink(childId);
+            }
+            move(childId, id);
+        }
+
+        @Override
+        public boolean removeChild(TreeNode child) {
+            if (!(child instanceof Node) || ((Node) child).tree() != CompactTree.this) {
+                return false;
+            }
+            int childId = ((Node) child).id;
+            if (parent[childId] != id) {
+                return false;
+            }
+            move(childId, NONE);
+            return true;
+        }
+
+        @Override
+        public boolean isExpanded() {
+            return expanded.get(id);
+        }
+
+        @Override
+        public void setExpanded(boolean expanded) {
+            for (int node = id; node != NONE; node = preOrderNext(node, id)) {
+                CompactTree.this.expanded.set(node, expanded);
+            }
+        }
+
+        @Override
+        public Object getData() {
+            return data[id];
+        }
+
+        @Override
+        public void setData(Object data) {
+            CompactTree.this.data[id] = data;
+        }
+
+        @Override
+        public String getTreePath() {
+            int length = 0;
+            for (int node = id; node != NONE; node = parent[node]) {
+                ++length;
+            }
+            String[] names = new String[length];
+            for (int node = id; node != NONE; node = parent[node]) {
+                names[--length] = data[node] == null ? "empty" : data[node].toString();
+            }
+            return String.join("->", names);
+        }
+
+        @Override
+        public TreeNode findParent(Object data) {
+            for (int node = id; node != NONE; node = parent[node]) {
+                if (Objects.equals(CompactTree.this.data[node], data)) {
+                    return new Node(node);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public TreeNode findChild(Object data) {
+            for (int node = preOrderNext(id, id); node != NONE; node = preOrderNext(node, id)) {
+                if (Objects.equals(CompactTree.this.data[node], data)) {
+                    return new Node(node);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Представления равны, если это один и тот же узел одного хранилища.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node node = (Node) o;
+            return id == node.id && tree() == node.tree();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(CompactTree.this) + id;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Потокобезопасный узел дерева для случая, когда дерево в основном читают из многих потоков.<br/>
+ * Дети хранятся в неизменяемом массиве, который при каждом изменении заменяется копией (copy-on-write)
+ *  через compare-and-set, а родитель, данные и признак развернутости - в volatile-полях. Поэтому:<ul>
+ * <li>чтение ({@link #getChildrenIterator()}, {@link #findChild(Object)}, {@link #getTreePath()} и т.д.) никогда
+ *  не блокируется и не бросает {@link ConcurrentModificationException}: итератор перебирает снимок детей
+ *  на момент своего создания, а обход дерева видит каждый узел в каком-то недавнем состоянии;</li>
+ * <li>изменения детей разных узлов не мешают друг другу, а одновременные изменения детей одного узла
+ *  повторяют копирование, пока их compare-and-set не пройдет (ни одно изменение массива не теряется);</li>
+ * <li>ссылка ребенка на родителя сбрасывается, только если она указывает на этот узел, а {@link #addChild(TreeNode)},
+ *  которое разминулось с одновременным {@link #removeChild(TreeNode)} того же ребенка, снимает поставленную ссылку,
+ *  поэтому ребенок не остается с родителем, в массиве которого его нет. Для детей других реализаций
+ *  эта проверка не атомарна.</li>
+ * </ul>
+ * Как и у {@link TreeNodeImpl}, {@link #addChild(TreeNode)} не удаляет ребенка из детей прежнего родителя:
+ *  перемещаемый узел нужно сначала удалить через {@link #removeChild(TreeNode)}. Поэтому одновременные
+ *  {@link #addChild(TreeNode)} одного узла к разным родителям оставляют его в массивах обоих
+ *  (родителем будет тот, чье добавление было последним) - так же, как последовательные.<br/>
+ * Добавление и удаление ребенка копируют массив детей узла - O(число детей), поэтому для узлов
+ *  с очень большим числом детей, которые часто меняются, этот класс не подходит.<br/>
+ * Составные действия (например, "найти и удалить") атомарными не являются.
+ */
+public class ConcurrentTreeNode implements TreeNode {
+    private static final TreeNode[] NO_CHILDREN = new TreeNode[0];
+    private static final AtomicReferenceFieldUpdater<ConcurrentTreeNode, TreeNode[]> CHILDREN =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentTreeNode.class, TreeNode[].class, "children");
+    private static final AtomicReferenceFieldUpdater<ConcurrentTreeNode, TreeNode> PARENT =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentTreeNode.class, TreeNode.class, "parent");
+
+    private volatile TreeNode parent;
+    private volatile TreeNode[] children = NO_CHILDREN;
+    private volatile Object data;
+    private volatile boolean expanded;
+
+    public ConcurrentTreeNode() {
+    }
+
+    public ConcurrentTreeNode(Object data) {
+        this.data = data;
+    }
+
+    @Override
+    public TreeNode getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TreeNode parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public TreeNode getRoot() {
+        TreeNode current = parent;
+        if (current == null) {
+            return null;
+        }
+        for (TreeNode next = current.getParent(); next != null; next = next.getParent()) {
+            current = next;
+        }
+        return current;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return children.length == 0;
+    }
+
+    @Override
+    public int getChildCount() {
+        return children.length;
+    }
+
+    /**
+     * Итератор по снимку детей на момент вызова. {@link Iterator#remove()} удаляет узел так же,
+     *  как {@link #removeChild(TreeNode)}.
+     */
+    @Override
+    public Iterator<TreeNode> getChildrenIterator() {
+        TreeNode[] snapshot = children;
+        return new Iterator<TreeNode>() {
+            private int next;
+            private TreeNode last;
+
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.length;
+            }
+
+            @Override
+            public TreeNode next() {
+                if (next >= snapshot.length) throw new NoSuchElementException();
+                last = snapshot[next++];
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) throw new IllegalStateException();
+                removeChild(last);
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public void addChild(TreeNode child) {
+        if (child == null) throw new IllegalArgumentException();
+
+        TreeNode[] current;
+        TreeNode[] updated;
+        do {
+            current = children;
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = child;
+        } while (!CHILDREN.compareAndSet(this, current, updated));
+        child.setParent(this);
+        // одновременный removeChild мог убрать ребенка из массива до того, как ему задан родитель
+        // (тогда он ссылку не сбросил): ссылку снимает само добавление
+        if (!contains(children, child)) {
+            unlink(child);
+        }
+    }
+
+    @Override
+    public boolean removeChild(TreeNode child) {
+        TreeNode[] current;
+        TreeNode[] updated;
+        TreeNode removed;
+        do {
+            current = children;
+            int index = -1;
+            for (int i = 0; i < current.length; ++i) {
+                if (current[i].equals(child)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return false;
+            }
+            removed = current[index];
+            updated = current.length == 1 ? NO_CHILDREN : new TreeNode[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        } while (!CHILDREN.compareAndSet(this, current, updated));
+        unlink(removed);
+        return true;
+    }
+
+    /**
+     * Сбрасывает ссылку ребенка на родителя, только если родитель - этот узел.
+     */
+    private void unlink(TreeNode child) {
+        if (child instanceof ConcurrentTreeNode) {
+            PARENT.compareAndSet((ConcurrentTreeNode) child, this, null);
+        } else if (child.getParent() == this) {
+            child.setParent(null);
+        }
+    }
+
+    private static boolean contains(TreeNode[] nodes, TreeNode node) {
+        for (TreeNode candidate : nodes) {
+            if (candidate == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isExpanded() {
+        return expanded;
+    }
+
+    @Override
+    public void setExpanded(boolean expanded) {
+        // узлы других реализаций сами задают признак своему поддереву, поэтому в них обход не заходит
+        for (Iterator<TreeNode> it = TreeTraversal.preOrder(this, node -> node instanceof ConcurrentTreeNode);
+             it.hasNext(); ) {
+            TreeNode node = it.next();
+            if (node instanceof ConcurrentTreeNode) {
+                ((ConcurrentTreeNode) node).expanded = expanded;
+            } else {
+                node.setExpanded(expanded);
+            }
+        }
+    }
+
+    @Override
+    public Object getData() {
+        return data;
+    }
+
+    @Override
+    public void setData(Object data) {
+        this.data = data;
+    }
+
+    @Override
+    public String getTreePath() {
+        List<TreeNode> chain = new ArrayList<>();
+        for (TreeNode node = this; node != null; node = node.getParent()) {
+            chain.add(node);
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = chain.size() - 1; i >= 0; --i) {
+            Object value = chain.get(i).getData();
+            result.append(value == null ? "empty" : value.toString());
+            if (i > 0) {
+                result.append("->");
+            }
+        }
+        return result.toString();
+    }
+
+    @Override
+    public TreeNode findParent(Object data) {
+        for (TreeNode node = this; node != null; node = node.getParent()) {
+            if (Objects.equals(node.getData(), data)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public TreeNode findChild(Object data) {
+        Iterator<TreeNode> it = TreeTraversal.preOrder(this);
+        it.next();
+        while (it.hasNext()) {
+            TreeNode node = it.next();
+            if (Objects.equals(node.getData(), data)) {
+                return node;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,141 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.util.*;
+
+/**
+ * Индекс "объект данных -&gt; узлы с такими данными" для всего дерева; хранится в корневом узле
+ *  (см. {@link TreeNodeImpl#setDataIndexed(boolean)}).<br/>
+ * Данные сравниваются через {@link Object#equals(Object)} и {@link Object#hashCode()}, поэтому объекты данных
+ *  не должны меняться так, чтобы менялся их хеш-код, пока они хранятся в индексированном дереве.
+ */
+final class DataIndex {
+    /**
+     * Если узлов с искомыми данными больше, первый из них ищется обходом дерева: сравнение кандидатов стоит
+     *  O(глубина) на кандидата, а обход обычно быстро доходит до первого из многих одинаковых узлов
+     *  (например, до первого узла без данных при <code>findChild(null)</code>).
+     */
+    private static final int MAX_COMPARED_CANDIDATES = 32;
+
+    /**
+     * Узлы с одинаковыми данными: один узел - {@link Collections#singleton(Object)}, несколько - множество
+     *  с поиском по ссылке, так что удаление идет за O(1).
+     */
+    private final Map<Object, Set<TreeNode>> nodes = new HashMap<>();
+
+    void add(Object data, TreeNode node) {
+        Set<TreeNode> set = nodes.get(data);
+        if (set == null) {
+            nodes.put(data, Collections.singleton(node));
+            return;
+        }
+        if (set.size() == 1) {
+            Set<TreeNode> single = set;
+            set = Collections.newSetFromMap(new IdentityHashMap<TreeNode, Boolean>());
+            set.addAll(single);
+            nodes.put(data, set);
+        }
+        set.add(node);
+    }
+
+    void remove(Object data, TreeNode node) {
+        Set<TreeNode> set = nodes.get(data);
+        if (set == null) {
+            return;
+        }
+        if (set.size() == 1) {
+            if (set.iterator().next() == node) {
+                nodes.remove(data);
+            }
+        } else {
+            set.remove(node);
+        }
+    }
+
+    /**
+     * Находит среди потомков <code>ancestor</code> (не считая его самого) первый в порядке обхода в глубину
+     *  узел с данными <code>data</code> - тот же, что нашел бы обход дерева.
+     */
+    TreeNode findFirst(TreeNode ancestor, Object data) {
+        Set<TreeNode> set = nodes.get(data);
+        if (set == null) {
+            return null;
+        }
+        if (set.size() > MAX_COMPARED_CANDIDATES) {
+            return traverse(ancestor, data);
+        }
+        TreeNode best = null;
+        int bestDepth = 0;
+        for (TreeNode node : set) {
+            int depth = depthBelow(ancestor, node);
+            if (depth > 0 && (best == null || precedes(node, depth, best, bestDepth))) {
+                best = node;
+                bestDepth = depth;
+            }
+        }
+        return best;
+    }
+
+    private static TreeNode traverse(TreeNode ancestor, Object data) {
+        Iterator<TreeNode> it = TreeTraversal.preOrder(ancestor);
+        it.next();
+        while (it.hasNext()) {
+            TreeNode node = it.next();
+            if (Objects.equals(node.getData(), data)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return на сколько уровней <code>node</code> ниже <code>ancestor</code> (0 - это он сам)
+     *  или -1, если <code>node</code> не является потомком <code>ancestor</code>
+     */
+    private static int depthBelow(TreeNode ancestor, TreeNode node) {
+        int depth = 0;
+        for (TreeNode current = node; current != null; current = current.getParent()) {
+            if (current == ancestor) {
+                return depth;
+            }
+            ++depth;
+        }
+        return -1;
+    }
+
+    /**
+     * Сравнивает два узла с общим предком (глубины даны относительно него) без построения путей:
+     *  раньше в порядке обхода в глубину идет предок или узел, ветвь которого стоит раньше среди детей
+     *  общего родителя.
+     */
+    private static boolean precedes(TreeNode a, int depthA, TreeNode b, int depthB) {
+        TreeNode x = a;
+        TreeNode y = b;
+        for (int i = depthA; i > depthB; --i) {
+            x = x.getParent();
+        }
+        for (int i = depthB; i > depthA; --i) {
+            y = y.getParent();
+        }
+        if (x == y) {
+            return depthA < depthB;
+        }
+        while (x.getParent() != y.getParent()) {
+            x = x.getParent();
+            y = y.getParent();
+        }
+        if (x instanceof TreeNodeImpl && y instanceof TreeNodeImpl && x.getParent() instanceof TreeNodeImpl) {
+            // номера ячеек в списке детей идут в том же порядке, что и сами дети
+            return ((TreeNodeImpl) x).slot < ((TreeNodeImpl) y).slot;
+        }
+        for (Iterator<TreeNode> it = TreeTraversal.children(x.getParent()); it.hasNext(); ) {
+            TreeNode child = it.next();
+            if (child == x) {
+                return true;
+            }
+            if (child == y) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,155 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.lang.ref.SoftReference;
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Узел дерева, дочерние узлы которого создаются при первом обращении к ним: функция <code>loader</code>
+ *  по объекту данных узла возвращает объекты данных его детей (например, по каталогу - его файлы,
+ *  по записи базы данных - подчиненные записи). Дети тоже являются <code>LazyTreeNode</code> с тем же загрузчиком.<br/>
+ * Дети загружаются любым методом, которому они нужны ({@link #getChildrenIterator()}, {@link #isLeaf()},
+ *  {@link #getChildCount()} и т.д.), а также {@link #setExpanded(boolean) setExpanded(true)}.<br/>
+ * <p/>
+ * Пока узел развернут, его дети хранятся обычной ссылкой. У свернутого узла они хранятся через
+ *  {@link SoftReference} и при нехватке памяти могут быть удалены сборщиком мусора, а при следующем обращении
+ *  загружаются заново (поэтому ссылки на детей свернутого узла могут перестать быть частью дерева).<br/>
+ * Изменения ({@link #addChild(TreeNode)}, {@link #removeChild(TreeNode)}, {@link #setData(Object)})
+ *  заново загрузить нельзя, поэтому они закрепляют (pin) детей измененного узла и всех его предков в памяти.
+ *  Индекс данных ({@link #setDataIndexed(boolean)}) загружает все поддерево и тоже держит его в памяти.
+ * <p/>
+ * В отличие от {@link TreeNodeImpl}, {@link #setExpanded(boolean)} задает признак только уже загруженным потомкам:
+ *  загружать ради него все поддерево было бы слишком дорого. {@link #setExpanded(boolean) setExpanded(true)}
+ *  загружает только детей самого узла; они загружаются свернутыми.
+ */
+public class LazyTreeNode extends TreeNodeImpl {
+    private final Function<Object, ? extends Iterable<?>> loader;
+    private ChildList strong;
+    private SoftReference<ChildList> soft;
+    private boolean pinned;
+
+    /**
+     * @param data   Объект данных корневого узла
+     * @param loader Функция, возвращающая объекты данных детей узла по его объекту данных
+     * @throws IllegalArgumentException если <code>loader == null</code>
+     */
+    public LazyTreeNode(Object data, Function<Object, ? extends Iterable<?>> loader) {
+        if (loader == null) throw new IllegalArgumentException();
+        this.loader = loader;
+        setData(data);
+    }
+
+    private LazyTreeNode(LazyTreeNode parent, Object data) {
+        super(parent, data);
+        this.loader = parent.loader;
+    }
+
+    /**
+     * @return <code>true</code>, если дети узла сейчас находятся в памяти (и обращение к ним не вызовет загрузку)
+     */
+    @Override
+    public boolean isLoaded() {
+        return strong != null || soft != null && soft.get() != null;
+    }
+
+    /**
+     * @return <code>true</code>, если дети узла закреплены в памяти из-за изменений в этом узле или в его потомках
+     */
+    public boolean isPinned() {
+        return pinned;
+    }
+
+    @Override
+    public void setExpanded(boolean expanded) {
+        super.setExpanded(expanded);
+        if (expanded) {
+            childList();
+        }
+    }
+
+    @Override
+    public void setData(Object data) {
+        super.setData(data);
+        pinAncestors();
+    }
+
+    @Override
+    ChildList childList() {
+        ChildList list = strong;
+        if (list == null) {
+            list = soft == null ? null : soft.get();
+            if (list == null) {
+                list = load();
+                keep(list);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    ChildList mutableChildList() {
+        ChildList list = childList();
+        pinned = true;
+        keep(list);
+        pinAncestors();
+        return list;
+    }
+
+    @Override
+    void detach(TreeNode removed) {
+        mutableChildList();
+        super.detach(removed);
+    }
+
+    @Override
+    void retentionChanged() {
+        ChildList list = strong != null ? strong : soft == null ? null : soft.get();
+        if (list != null) {
+            keep(list);
+        }
+    }
+
+    private ChildList load() {
+        Iterable<?> childData = loader.apply(getData());
+        int size = childData instanceof Collection ? ((Collection<?>) childData).size() : 0;
+        ChildList list = new ChildList(this, size);
+        if (childData != null) {
+            for (Object data : childData) {
+                list.add(new LazyTreeNode(this, data));
+            }
+        }
+        childrenLoaded(list);
+        return list;
+    }
+
+    /**
+     * Держит детей обычной ссылкой, если узел развернут или закреплен, а также в индексированном дереве
+     *  (индекс все равно ссылается на узлы, а заново загруженные дети попали бы в него повторно), и мягкой - иначе.
+     */
+    private void keep(ChildList list) {
+        if (pinned || isExpanded() || isDataIndexed()) {
+            strong = list;
+            soft = null;
+        } else {
+            strong = null;
+            if (soft == null || soft.get() != list) {
+                soft = new SoftReference<>(list);
+            }
+        }
+    }
+
+    private void pinAncestors() {
+        for (TreeNode node = getParent(); node instanceof LazyTreeNode; node = node.getParent()) {
+            LazyTreeNode ancestor = (LazyTreeNode) node;
+            if (ancestor.pinned) {
+                break;
+            }
+            ChildList list = ancestor.strong != null ? ancestor.strong
+                    : ancestor.soft == null ? null : ancestor.soft.get();
+            ancestor.pinned = true;
+            if (list != null) {
+                ancestor.keep(list);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.*;
+
+/**
+ * Параллельный поиск и свертка по поддереву {@link TreeNode} в {@link ForkJoinPool}.<br/>
+ * Каждая задача обходит свое поддерево в прямом порядке (без рекурсии, как {@link TreeTraversal}).
+ *  Когда задача прошла не меньше {@link #SEQUENTIAL_THRESHOLD} узлов, а ее прежние подзадачи уже разобраны
+ *  другими потоками, она отдает в новую подзадачу еще не пройденных братьев узла на самом верхнем уровне
+ *  своего стека - то есть самую большую из отложенных частей работы (обычно это дети узла с большим
+ *  числом потомков). Небольшие поддеревья так и обходятся последовательно.<br/>
+ * Результаты собираются в порядке обхода в глубину (прямом), как при последовательном обходе.
+ * Дерево не должно меняться во время обхода.
+ */
+public final class ParallelTreeSearch {
+    /**
+     * Сколько узлов задача обходит сама, прежде чем отдать часть работы в новую подзадачу.
+     */
+    public static final int SEQUENTIAL_THRESHOLD = 1 << 10;
+
+    private ParallelTreeSearch() {
+    }
+
+    /**
+     * Находит все узлы поддерева <code>root</code> (включая сам <code>root</code>), удовлетворяющие условию.
+     * @return найденные узлы в порядке обхода в глубину (прямом)
+     */
+    public static List<TreeNode> parallelSearch(TreeNode root, Predicate<? super TreeNode> predicate) {
+        return collect(root, ArrayList::new, (list, node) -> {
+            if (predicate.test(node)) {
+                list.add(node);
+            }
+        }, List::addAll);
+    }
+
+    /**
+     * Считает узлы поддерева <code>root</code> (включая сам <code>root</code>), удовлетворяющие условию.
+     */
+    public static long count(TreeNode root, Predicate<? super TreeNode> predicate) {
+        return reduce(root, 0L, (count, node) -> predicate.test(node) ? count + 1 : count, Long::sum);
+    }
+
+    /**
+     * Свертка узлов поддерева по правилам {@link java.util.stream.Stream#reduce(Object, BiFunction, BinaryOperator)}:
+     *  <code>identity</code> - нейтральный элемент <code>combiner</code>, а <code>combiner</code> ассоциативен.
+     * Например, сумма:
+     * <code>reduce(root, 0, (sum, node) -&gt; sum + weight(node), Integer::sum)</code>.
+     */
+    public static <R> R reduce(TreeNode root, R identity, BiFunction<R, ? super TreeNode, R> accumulator,
+                               BinaryOperator<R> combiner) {
+        Box<R> result = collect(root, () -> new Box<>(identity),
+                (box, node) -> box.value = accumulator.apply(box.value, node),
+                (left, right) -> left.value = combiner.apply(left.value, right.value));
+        return result.value;
+    }
+
+    /**
+     * Изменяемая свертка узлов поддерева по правилам {@link java.util.stream.Stream#collect(Supplier, BiConsumer, BiConsumer)}:
+     *  каждая задача накапливает свою часть в отдельном контейнере из <code>supplier</code>,
+     *  а <code>combiner</code> дописывает в левый контейнер правый (следующий за ним в порядке обхода).
+     */
+    public static <A> A collect(TreeNode root, Supplier<A> supplier, BiConsumer<A, ? super TreeNode> accumulator,
+                                BiConsumer<A, A> combiner) {
+        return collect(ForkJoinPool.commonPool(), root, supplier, accumulator, combiner);
+    }
+
+    /**
+     * То же, что и {@link #collect(TreeNode, Supplier, BiConsumer, BiConsumer)}, но в заданном пуле.
+     */
+    public static <A> A collect(ForkJoinPool pool, TreeNode root, Supplier<A> supplier,
+                                BiConsumer<A, ? super TreeNode> accumulator, BiConsumer<A, A> combiner) {
+        if (pool == null || root == null) throw new IllegalArgumentException();
+
+        return pool.invoke(new Task<>(new TreeNode[]{root}, supplier, accumulator, combiner));
+    }
+
+    private static final class Box<R> {
+        R value;
+
+        Box(R value) {
+            this.value = value;
+        }
+    }
+
+    private static final class Task<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final TreeNode[] roots;
+        private final Supplier<A> supplier;
+        private final BiConsumer<A, ? super TreeNode> accumulator;
+        private final BiConsumer<A, A> combiner;
+
+        Task(TreeNode[] roots, Supplier<A> supplier, BiConsumer<A, ? super TreeNode> accumulator,
+             BiConsumer<A, A> combiner) {
+            this.roots = roots;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            A result = supplier.get();
+            // отданные части идут в порядке обхода после всего, что задача обходит сама,
+            // причем каждая следующая - раньше предыдущей
+            List<Task<A>> forked = new ArrayList<>();
+            Deque<Iterator<TreeNode>> stack = new ArrayDeque<>();
+            stack.push(Arrays.asList(roots).iterator());
+            int visited = 0;
+            while (!stack.isEmpty()) {
+                Iterator<TreeNode> top = stack.peek();
+                if (!top.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                TreeNode node = top.next();
+                accumulator.accept(result, node);
+                if (!node.isLeaf()) {
+                    stack.push(node.getChildrenIterator());
+                }
+
+                if (++visited >= SEQUENTIAL_THRESHOLD && getQueuedTaskCount() == 0) {
+                    Task<A> task = split(stack);
+                    if (task != null) {
+                        task.fork();
+                        forked.add(task);
+                    }
+                    visited = 0;
+                }
+            }
+            for (int i = forked.size() - 1; i >= 0; --i) {
+                combiner.accept(result, forked.get(i).join());
+            }
+            return result;
+        }
+
+        /**
+         * Забирает из стека оставшихся братьев на самом верхнем уровне, где они есть, в новую задачу.
+         */
+        private Task<A> split(Deque<Iterator<TreeNode>> stack) {
+            for (Iterator<Iterator<TreeNode>> levels = stack.descendingIterator(); levels.hasNext(); ) {
+                Iterator<TreeNode> level = levels.next();
+                if (level.hasNext()) {
+                    List<TreeNode> rest = new ArrayList<>();
+                    while (level.hasNext()) {
+                        rest.add(level.next());
+                    }
+                    return new Task<>(rest.toArray(new TreeNode[0]), supplier, accumulator, combiner);
+                }
+            }
+            return null;
+        }
+    }
+}
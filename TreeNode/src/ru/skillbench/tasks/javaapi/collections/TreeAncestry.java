@@ -0,0 +1,222 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.util.*;
+
+/**
+ * Запросы о предках в дереве с корнем <code>root</code>: "является ли A предком B", наименьший общий предок (LCA),
+ *  предок на k уровней выше, глубина узла.<br/>
+ * По дереву один раз строятся:<ul>
+ * <li>номера узлов в прямом порядке обхода и размеры поддеревьев: поддерево узла - это отрезок номеров
+ *  [номер, номер + размер), поэтому проверка "предок ли" идет за O(1);</li>
+ * <li>таблица двоичных подъемов: предок на 2^k уровней выше каждого узла, поэтому LCA и предок на k уровней выше -
+ *  за O(log n). Таблица занимает O(n log(высота)) памяти.</li>
+ * </ul>
+ * Изменения отслеживаются по версии состава именно того дерева, в котором находится <code>root</code>
+ *  (у {@link TreeNodeImpl} ее меняют добавление, удаление и перемещение узлов, в том числе загрузка детей
+ *  {@link LazyTreeNode}; у {@link CompactTree} - счетчик изменений), и после них таблицы перестраиваются лениво -
+ *  при следующем запросе. Изменения в других деревьях таблиц не сбрасывают. Если в дереве есть узлы других
+ *  реализаций {@link TreeNode}, то после изменения их детей нужно вызвать {@link #invalidate()}.<br/>
+ * Узлы сравниваются через {@link Object#equals(Object)} и {@link Object#hashCode()}. Не потокобезопасно.
+ */
+public final class TreeAncestry {
+    private final TreeNode root;
+    private TreeNodeImpl versionHolder;
+    private long version;
+    private boolean valid;
+
+    private Map<TreeNode, Integer> index;
+    /**
+     * Узлы в прямом порядке обхода: номер узла - его позиция здесь.
+     */
+    private TreeNode[] nodes;
+    private int[] subtreeSize;
+    private int[] depth;
+    /**
+     * <code>up[k][i]</code> - предок узла <code>i</code> на 2^k уровней выше (или корень, если выше его нет).
+     */
+    private int[][] up;
+
+    public TreeAncestry(TreeNode root) {
+        if (root == null) throw new IllegalArgumentException();
+        this.root = root;
+    }
+
+    /**
+     * Сбрасывает таблицы: они будут построены заново при следующем запросе.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * @return <code>true</code>, если <code>ancestor</code> - предок <code>node</code> или сам <code>node</code>
+     *  (как в {@link TreeNode#findParent(Object)}, узел считается своим предком)
+     * @throws IllegalArgumentException если какого-то из узлов нет в дереве
+     */
+    public boolean isAncestor(TreeNode ancestor, TreeNode node) {
+        validate();
+        return isAncestor(indexOf(ancestor), indexOf(node));
+    }
+
+    /**
+     * @return наименьший общий предок узлов (один из них, если он предок другого)
+     * @throws IllegalArgumentException если какого-то из узлов нет в дереве
+     */
+    public TreeNode lowestCommonAncestor(TreeNode a, TreeNode b) {
+        validate();
+        int x = indexOf(a);
+        int y = indexOf(b);
+        if (isAncestor(x, y)) {
+            return nodes[x];
+        }
+        if (isAncestor(y, x)) {
+            return nodes[y];
+        }
+        // поднимаемся от x как можно выше, оставаясь ниже общего предка
+        for (int k = up.length - 1; k >= 0; --k) {
+            if (!isAncestor(up[k][x], y)) {
+                x = up[k][x];
+            }
+        }
+        return nodes[up[0][x]];
+    }
+
+    /**
+     * @return предок узла на <code>levels</code> уровней выше (0 - сам узел) или <code>null</code>,
+     *  если узел находится выше корня <code>root</code>
+     * @throws IllegalArgumentException если узла нет в дереве или <code>levels &lt; 0</code>
+     */
+    public TreeNode getAncestor(TreeNode node, int levels) {
+        if (levels < 0) throw new IllegalArgumentException();
+        validate();
+        int x = indexOf(node);
+        if (levels > depth[x]) {
+            return null;
+        }
+        for (int k = 0; levels != 0; ++k, levels >>>= 1) {
+            if ((levels & 1) != 0) {
+                x = up[k][x];
+            }
+        }
+        return nodes[x];
+    }
+
+    /**
+     * @return глубина узла относительно <code>root</code> (0 для самого <code>root</code>)
+     * @throws IllegalArgumentException если узла нет в дереве
+     */
+    public int getDepth(TreeNode node) {
+        validate();
+        return depth[indexOf(node)];
+    }
+
+    /**
+     * @return <code>true</code>, если узел находится в дереве с корнем <code>root</code>
+     */
+    public boolean contains(TreeNode node) {
+        validate();
+        return index.containsKey(node);
+    }
+
+    private boolean isAncestor(int ancestor, int node) {
+        return ancestor <= node && node < ancestor + subtreeSize[ancestor];
+    }
+
+    private int indexOf(TreeNode node) {
+        Integer i = index.get(node);
+        if (i == null) throw new IllegalArgumentException("Node is not in the tree: " + node);
+        return i;
+    }
+
+    private void validate() {
+        if (valid && versionHolder == currentVersionHolder() && version == currentVersion()) {
+            return;
+        }
+        build();
+        // версия читается после обхода: обход может загрузить детей LazyTreeNode, и они уже в таблицах
+        versionHolder = currentVersionHolder();
+        version = currentVersion();
+        valid = true;
+    }
+
+    /**
+     * @return узел, хранящий версии дерева, в котором находится <code>root</code> (у других реализаций - <code>null</code>)
+     */
+    private TreeNodeImpl currentVersionHolder() {
+        return root instanceof TreeNodeImpl ? TreeNodeImpl.versionHolder(root) : null;
+    }
+
+    private long currentVersion() {
+        if (root instanceof TreeNodeImpl) {
+            return currentVersionHolder().structureVersion();
+        } else if (root instanceof CompactTree.Node) {
+            return ((CompactTree.Node) root).tree().modCount();
+        }
+        return 0;
+    }
+
+    private void build() {
+        List<TreeNode> order = new ArrayList<>();
+        int[] parent = new int[16];
+        int[] depth = new int[16];
+        int height = 0;
+        // обход в прямом порядке без рекурсии; на стеке - итераторы детей узлов текущего пути,
+        // в path - номера этих узлов
+        Deque<Iterator<TreeNode>> iterators = new ArrayDeque<>();
+        int[] path = new int[16];
+        order.add(root);
+        iterators.push(TreeTraversal.children(root));
+        while (!iterators.isEmpty()) {
+            Iterator<TreeNode> top = iterators.peek();
+            if (!top.hasNext()) {
+                iterators.pop();
+                continue;
+            }
+            TreeNode child = top.next();
+            int i = order.size();
+            int level = iterators.size();
+            if (i == parent.length) {
+                parent = Arrays.copyOf(parent, i * 2);
+                depth = Arrays.copyOf(depth, i * 2);
+            }
+            if (level == path.length) {
+                path = Arrays.copyOf(path, level * 2);
+            }
+            parent[i] = path[level - 1];
+            depth[i] = level;
+            height = Math.max(height, level);
+            path[level] = i;
+            order.add(child);
+            iterators.push(TreeTraversal.children(child));
+        }
+
+        int n = order.size();
+        nodes = order.toArray(new TreeNode[n]);
+        this.depth = depth;
+        index = new HashMap<>(Math.max(16, (int) (n / 0.75f) + 1));
+        subtreeSize = new int[n];
+        for (int i = 0; i < n; ++i) {
+            index.put(nodes[i], i);
+            subtreeSize[i] = 1;
+        }
+        // в прямом порядке родитель идет раньше всех своих потомков
+        for (int i = n - 1; i > 0; --i) {
+            subtreeSize[parent[i]] += subtreeSize[i];
+        }
+
+        int levels = 1;
+        while ((1 << levels) <= height) {
+            ++levels;
+        }
+        up = new int[levels][];
+        up[0] = parent;
+        for (int k = 1; k < levels; ++k) {
+            int[] previous = up[k - 1];
+            int[] current = new int[n];
+            for (int i = 0; i < n; ++i) {
+                current[i] = previous[previous[i]];
+            }
+            up[k] = current;
+        }
+    }
+}
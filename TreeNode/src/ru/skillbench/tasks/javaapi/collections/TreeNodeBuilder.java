@@ -0,0 +1,161 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Строит дерево {@link TreeNodeImpl} из плоских записей вида (id, parentId, data) - например, из атрибутов
+ *  <code>empno</code>/<code>mgr</code> сотрудников в emp.xml.<br/>
+ * Записи могут идти в любом порядке (ребенок - раньше родителя). Родители находятся по id через {@link HashMap}
+ *  за один проход, списки детей создаются сразу нужного размера, и ни один узел не ищется в дереве,
+ *  поэтому построение идет за O(n) без вызовов {@link TreeNode#addChild(TreeNode)}.<br/>
+ * Запись без родителя (<code>parentId == null</code>) - корень. Порядок детей - порядок их записей.
+ *
+ * @param <R> тип записи
+ */
+public final class TreeNodeBuilder<R> {
+    private final Function<? super R, ?> id;
+    private final Function<? super R, ?> parentId;
+    private final Function<? super R, ?> data;
+
+    /**
+     * @param id       id записи (сравниваются через {@link Object#equals(Object)} и {@link Object#hashCode()})
+     * @param parentId id родительской записи или <code>null</code> для корня
+     * @param data     объект данных узла
+     */
+    public TreeNodeBuilder(Function<? super R, ?> id, Function<? super R, ?> parentId,
+                           Function<? super R, ?> data) {
+        if (id == null || parentId == null || data == null) throw new IllegalArgumentException();
+        this.id = id;
+        this.parentId = parentId;
+        this.data = data;
+    }
+
+    /**
+     * Строит дерево с единственным корнем.
+     * @throws IllegalArgumentException если корней нет или больше одного, а также по причинам из {@link #buildForest(Stream)}
+     */
+    public TreeNode build(Stream<? extends R> records) {
+        List<TreeNode> roots = buildForest(records);
+        if (roots.size() != 1) throw new IllegalArgumentException("Expected one root, found " + roots.size());
+        return roots.get(0);
+    }
+
+    /**
+     * Строит лес: все корни в порядке их записей.
+     * @throws IllegalArgumentException если у записи нет id, id повторяется, родительской записи нет (сирота)
+     *  или записи образуют цикл
+     */
+    public List<TreeNode> buildForest(Stream<? extends R> records) {
+        if (records == null) throw new IllegalArgumentException();
+
+        Spliterator<? extends R> source = records.spliterator();
+        long known = source.getExactSizeIfKnown();
+        int capacity = known < 0 || known > Integer.MAX_VALUE ? 16 : (int) known;
+        Map<Object, Integer> indexById = new HashMap<>(Math.max(16, (int) (capacity / 0.75f) + 1));
+        List<Object> parentIds = new ArrayList<>(capacity);
+        List<Object> dataList = new ArrayList<>(capacity);
+        source.forEachRemaining(record -> {
+            Object recordId = id.apply(record);
+            if (recordId == null) throw new IllegalArgumentException("Record without id: " + record);
+            if (indexById.putIfAbsent(recordId, dataList.size()) != null) {
+                throw new IllegalArgumentException("Duplicate id: " + recordId);
+            }
+            parentIds.add(parentId.apply(record));
+            dataList.add(data.apply(record));
+        });
+
+        int n = dataList.size();
+        int[] parents = new int[n];
+        int[] firstChild = new int[n + 1];
+        int rootCount = 0;
+        for (int i = 0; i < n; ++i) {
+            Object parentKey = parentIds.get(i);
+            if (parentKey == null) {
+                parents[i] = -1;
+                ++rootCount;
+                continue;
+            }
+            Integer parent = indexById.get(parentKey);
+            if (parent == null) throw new IllegalArgumentException("Parent " + parentKey + " not found for id "
+                    + idOf(indexById, i));
+            parents[i] = parent;
+            ++firstChild[parent + 1];
+        }
+        // дети каждого узла - отрезок children[firstChild[p]..firstChild[p + 1]) в порядке записей
+        for (int i = 0; i < n; ++i) {
+            firstChild[i + 1] += firstChild[i];
+        }
+        int[] children = new int[n - rootCount];
+        int[] filled = Arrays.copyOf(firstChild, n);
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int i = 0; i < n; ++i) {
+            if (parents[i] < 0) {
+                queue[tail++] = i;
+            } else {
+                children[filled[parents[i]]++] = i;
+            }
+        }
+
+        // узлы создаются в ширину от корней, так что родитель всегда создан раньше ребенка;
+        // узлы, до которых обход не дошел, лежат на циклах (или под ними)
+        TreeNodeImpl[] nodes = new TreeNodeImpl[n];
+        List<TreeNode> roots = new ArrayList<>(rootCount);
+        for (int i = 0; i < tail; ++i) {
+            nodes[queue[i]] = new TreeNodeImpl(null, dataList.get(queue[i]));
+            roots.add(nodes[queue[i]]);
+        }
+        for (int head = 0; head < tail; ++head) {
+            int index = queue[head];
+            int from = firstChild[index];
+            int to = firstChild[index + 1];
+            if (from == to) {
+                continue;
+            }
+            TreeNodeImpl node = nodes[index];
+            ChildList list = node.mutableChildList(to - from);
+            for (int k = from; k < to; ++k) {
+                int child = children[k];
+                nodes[child] = new TreeNodeImpl(node, dataList.get(child));
+                list.add(nodes[child]);
+                queue[tail++] = child;
+            }
+        }
+        if (tail < n) {
+            for (int i = 0; i < n; ++i) {
+                if (nodes[i] == null) {
+                    throw new IllegalArgumentException("Cycle through id " + idOf(indexById, cycleNode(parents, i)));
+                }
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Находит узел на цикле, к которому ведет цепочка родителей от <code>start</code> (не достижимого от корней).
+     */
+    private static int cycleNode(int[] parents, int start) {
+        // шаг "черепахи" и "зайца" (Флойд): в цепочке родителей недостижимого узла нет корня
+        int slow = start;
+        int fast = start;
+        do {
+            slow = parents[slow];
+            fast = parents[parents[fast]];
+        } while (slow != fast);
+        return slow;
+    }
+
+    /**
+     * Ищет id записи для сообщения об ошибке (только на пути к исключению).
+     */
+    private static Object idOf(Map<Object, Integer> indexById, int index) {
+        for (Map.Entry<Object, Integer> entry : indexById.entrySet()) {
+            if (entry.getValue() == index) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+}
@@ -4,9 +4,54 @@ import java.util.*;
 
 public class TreeNodeImpl implements TreeNode{
     private TreeNode parent = null;
-    private List<TreeNode> children = null;
+    private ChildList children = null;
     private Object data = null;
     private boolean expanded = false;
+    private DataIndex dataIndex = null;
+    private boolean childOrderPreserved = true;
+    /**
+     * Номер ячейки этого узла в {@link ChildList} родителя (-1, если узел не в списке).
+     */
+    int slot = -1;
+
+    /**
+     * Версии дерева, корнем которого является этот узел (у некорневых узлов не используются):
+     *  <code>shapeVersion</code> растет, когда у какого-то узла дерева меняется родитель (узел перемещается
+     *  или удаляется; добавление нового поддерева не меняет предков существующих узлов),
+     *  <code>dataVersion</code> - при {@link #setData(Object)} любого узла дерева,
+     *  <code>structureVersion</code> - при любом изменении состава дерева, включая добавление узлов.
+     */
+    private long shapeVersion;
+    private long dataVersion;
+    private long structureVersion;
+
+    /**
+     * Корень и глубина узла, действительные, пока корень остается корнем и его shapeVersion
+     *  равна cachedShapeVersion. Кэшируются, только если все узлы цепочки до корня - {@link TreeNodeImpl}:
+     *  перемещения узлов других реализаций не отслеживаются.
+     */
+    private TreeNodeImpl cachedRoot;
+    private long cachedShapeVersion;
+    private int cachedDepth;
+    /**
+     * Путь узла, действительный, пока не изменились версии формы и данных корня <code>pathRoot</code>.
+     */
+    private TreeNodeImpl pathRoot;
+    private long pathShapeVersion;
+    private long pathDataVersion;
+    private String cachedPath;
+
+    public TreeNodeImpl() {
+    }
+
+    /**
+     * Создает дочерний узел, который родитель сам кладет в свой список детей (см. {@link LazyTreeNode}).
+     * Версии дерева при этом не меняются: у существующих узлов не меняются ни предки, ни данные.
+     */
+    TreeNodeImpl(TreeNode parent, Object data) {
+        this.parent = parent;
+        this.data = data;
+    }
 
     /**
      * Возвращает родительский объект <code>TreeNode</code>.
@@ -25,21 +70,56 @@ public class TreeNodeImpl implements TreeNode{
      */
     @Override
     public void setParent(TreeNode parent) {
+        // поддерево узла уходит из прежнего дерева: кэши его узлов привязаны к прежнему корню или к самому узлу
+        TreeNodeImpl previous = versionHolder(this);
+        if (previous != null) {
+            ++previous.shapeVersion;
+            ++previous.structureVersion;
+        }
+        ++shapeVersion;
+        ++structureVersion;
         this.parent = parent;
+        TreeNodeImpl next = versionHolder(parent);
+        if (next != null) {
+            ++next.structureVersion;
+        }
     }
 
     /**
      * Возвращает корень дерева, содержащего данный объект <code>TreeNode</code>.
      *
+     * Результат кэшируется (см. {@link #getTreePath()}).
+     *
      * @return корневой узел. Или <code>null</code>, если у данного узла нет родителя.
      */
     @Override
     public TreeNode getRoot() {
-        TreeNode root = parent;
-        while (root != null && root.getParent() != null) {
-            root = root.getParent();
+        if (parent == null) {
+            return null;
         }
-        return root;
+        TreeNodeImpl root = treeRoot();
+        if (root != null) {
+            return root;
+        }
+        TreeNode node = parent;
+        while (node.getParent() != null) {
+            node = node.getParent();
+        }
+        return node;
+    }
+
+    /**
+     * Возвращает глубину узла: 0 для корня, 1 для его дочерних узлов и т.д. Результат кэшируется.
+     */
+    public int getDepth() {
+        if (treeRoot() != null) {
+            return cachedDepth;
+        }
+        int depth = 0;
+        for (TreeNode node = parent; node != null; node = node.getParent()) {
+            ++depth;
+        }
+        return depth;
     }
 
     /**
@@ -49,6 +129,7 @@ public class TreeNodeImpl implements TreeNode{
      */
     @Override
     public boolean isLeaf() {
+        ChildList children = childList();
         if (children == null) {
             return true;
         } else {
@@ -61,7 +142,8 @@ public class TreeNodeImpl implements TreeNode{
      */
     @Override
     public int getChildCount() {
-        return children.size();
+        ChildList children = childList();
+        return children == null ? 0 : children.size();
     }
 
     /**
@@ -69,7 +151,8 @@ public class TreeNodeImpl implements TreeNode{
      */
     @Override
     public Iterator<TreeNode> getChildrenIterator() {
-        return children.iterator();
+        ChildList children = childList();
+        return children == null ? Collections.<TreeNode>emptyIterator() : children.iterator();
     }
 
     /**
@@ -80,11 +163,12 @@ public class TreeNodeImpl implements TreeNode{
      */
     @Override
     public void addChild(TreeNode child) {
-        if (children == null) {
-            children = new LinkedList<>();
-        }
-        children.add(child);
+        mutableChildList().add(child);
         child.setParent(this);
+
+        if (dataIndex != null || child instanceof TreeNodeImpl && ((TreeNodeImpl) child).dataIndex != null) {
+            setDataIndex(child, null, dataIndex);
+        }
     }
 
     /**
@@ -99,13 +183,129 @@ public class TreeNodeImpl implements TreeNode{
      */
     @Override
     public boolean removeChild(TreeNode child) {
-        if (children != null && children.contains(child)) {
-            children.get(children.indexOf(child)).setParent(null);
-            children.remove(child);
-            return true;
-        } else {
+        ChildList children = childList();
+        int slot = children == null ? -1 : children.slotOf(child);
+        if (slot < 0) {
             return false;
         }
+        children = mutableChildList();
+        detach(children.getSlot(slot));
+        children.remove(slot, childOrderPreserved);
+        return true;
+    }
+
+    /**
+     * Список дочерних узлов или <code>null</code>, если их еще не добавляли.<br/>
+     * Подклассы, которые получают детей не через {@link #addChild(TreeNode)}, могут хранить список по-своему.
+     */
+    ChildList childList() {
+        return children;
+    }
+
+    /**
+     * Список дочерних узлов для изменения; создается при первом добавлении.
+     */
+    ChildList mutableChildList() {
+        if (children == null) {
+            children = new ChildList(this);
+        }
+        return children;
+    }
+
+    /**
+     * Создает список дочерних узлов сразу нужной емкости, если его еще нет (см. {@link TreeNodeBuilder}).
+     */
+    ChildList mutableChildList(int capacity) {
+        if (children == null) {
+            children = new ChildList(this, capacity);
+        }
+        return children;
+    }
+
+    /**
+     * @return <code>false</code>, если дочерние узлы еще не загружены в память (и обращение к ним их загрузит)
+     */
+    boolean isLoaded() {
+        return true;
+    }
+
+    /**
+     * Задает признак развернутости только этому узлу (без потомков).
+     */
+    void setExpandedFlag(boolean expanded) {
+        this.expanded = expanded;
+        retentionChanged();
+    }
+
+    /**
+     * Вызывается после изменения признака развернутости или индекса данных узла: от них может зависеть,
+     *  как подкласс хранит детей (см. {@link LazyTreeNode}).
+     */
+    void retentionChanged() {
+    }
+
+    /**
+     * Учитывает дочерние узлы, созданные в обход {@link #addChild(TreeNode)}: меняет версию состава дерева
+     *  и подключает их к индексу данных дерева.
+     */
+    void childrenLoaded(ChildList loaded) {
+        TreeNodeImpl holder = versionHolder(this);
+        if (holder != null) {
+            ++holder.structureVersion;
+        }
+        if (dataIndex != null) {
+            for (TreeNode child : loaded) {
+                setDataIndex(child, null, dataIndex);
+            }
+        }
+    }
+
+    /**
+     * Отсоединяет удаляемый дочерний узел от этого узла и от индекса данных.
+     */
+    void detach(TreeNode removed) {
+        if (dataIndex != null) {
+            setDataIndex(removed, dataIndex, null);
+        }
+        removed.setParent(null);
+    }
+
+    /**
+     * Возвращает дочерний узел в позиции <code>index</code> (в порядке добавления,
+     * если не выключено {@link #setChildOrderPreserved(boolean) сохранение порядка}).
+     *
+     * @throws IndexOutOfBoundsException если <code>index &lt; 0</code> или <code>index &gt;= getChildCount()</code>
+     */
+    public TreeNode getChildAt(int index) {
+        ChildList children = childList();
+        if (children == null) throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+        return children.get(index);
+    }
+
+    /**
+     * Возвращает позицию дочернего узла <code>child</code> или -1, если это не дочерний узел.<br/>
+     * Для дочернего {@link TreeNodeImpl} позиция известна без поиска.
+     */
+    public int getIndex(TreeNode child) {
+        ChildList children = childList();
+        return children == null ? -1 : children.indexOf(child);
+    }
+
+    /**
+     * Задает, сохраняет ли {@link #removeChild(TreeNode)} порядок остальных дочерних узлов (по умолчанию - да).<br/>
+     * Дети хранятся в массиве, и каждый дочерний {@link TreeNodeImpl} помнит свою ячейку, поэтому
+     * удаление по ссылке идет без поиска. С сохранением порядка ячейка просто освобождается
+     * (свободные ячейки время от времени убираются уплотнением массива), без него - в нее переносится
+     * последний дочерний узел.
+     *
+     * @param preserved <code>false</code> - разрешить менять порядок дочерних узлов при удалении
+     */
+    public void setChildOrderPreserved(boolean preserved) {
+        this.childOrderPreserved = preserved;
+    }
+
+    public boolean isChildOrderPreserved() {
+        return childOrderPreserved;
     }
 
     /**
@@ -122,14 +322,22 @@ public class TreeNodeImpl implements TreeNode{
 
     /**
      * Задает признак "развернутости" (expanded) данному <code>TreeNode</code> и рекурсивно всем его дочерним узлам
+     * (обход идет без рекурсии, через {@link TreeTraversal}).
      *
      * @param expanded <code>true</code> - разворачивает эту ветвь дерева, <code>false</code> - сворачивает ее.
      */
     @Override
     public void setExpanded(boolean expanded) {
-        this.expanded = expanded;
-        for (TreeNode child : children) {
-            child.setExpanded(expanded);
+        // узлы других реализаций сами задают признак своему поддереву, поэтому в них обход не заходит;
+        // не загруженные дети (см. LazyTreeNode) тоже не загружаются ради признака
+        for (Iterator<TreeNode> it = TreeTraversal.preOrder(this,
+                node -> node instanceof TreeNodeImpl && ((TreeNodeImpl) node).isLoaded()); it.hasNext(); ) {
+            TreeNode node = it.next();
+            if (node instanceof TreeNodeImpl) {
+                ((TreeNodeImpl) node).setExpandedFlag(expanded);
+            } else {
+                node.setExpanded(expanded);
+            }
         }
     }
 
@@ -149,7 +357,15 @@ public class TreeNodeImpl implements TreeNode{
      */
     @Override
     public void setData(Object data) {
+        if (dataIndex != null) {
+            dataIndex.remove(this.data, this);
+            dataIndex.add(data, this);
+        }
         this.data = data;
+        TreeNodeImpl root = treeRoot();
+        if (root != null) {
+            ++root.dataVersion;
+        }
     }
 
     /**
@@ -157,28 +373,138 @@ public class TreeNodeImpl implements TreeNode{
      * Элементы пути разделяются символами "->".<br/>
      * Каждый элемент пути - это либо getData().toString(), либо строка "empty", если getData()==null.<br/>
      * Например: "rootNode0->node1->node13->empty" ("rootNode0" - это в данном примере результат вызова метода
-     * getRoot().getData().toString() ).
+     * getRoot().getData().toString() ).<br/>
+     * Путь, корень и глубина узла кэшируются, пока в дереве не перемещаются узлы и (для пути)
+     * не вызывается {@link #setData(Object)}, так что повторные вызовы выполняются за O(1).
+     * Кэш есть только у узлов, все предки которых - {@link TreeNodeImpl}. Если объект данных меняется сам по себе
+     * (без {@link #setData(Object)}), кэшированный путь может содержать его прежнее строковое представление.
      */
     @Override
     public String getTreePath() {
-        List<TreeNode> path = new LinkedList<>();
-        path.add(this);
-        TreeNode current = parent;
-        while (current != null) {
-            path.add(current);
-            current = current.getParent();
+        if (isPathValid()) {
+            return cachedPath;
+        }
+
+        // путь строится от ближайшего предка с действительным кэшем пути (при выводе дерева по строкам это родитель);
+        // промежуточные пути не кэшируются, чтобы для глубокой ветви не хранить O(глубина^2) символов
+        List<TreeNode> chain = new ArrayList<>();
+        TreeNode anchor = this;
+        while (anchor != null && !(anchor instanceof TreeNodeImpl && ((TreeNodeImpl) anchor).isPathValid())) {
+            chain.add(anchor);
+            anchor = anchor.getParent();
         }
 
-        Collections.reverse(path);
         StringBuilder result = new StringBuilder();
-        for (TreeNode node : path) {
+        if (anchor != null) {
+            result.append(((TreeNodeImpl) anchor).cachedPath).append("->");
+        }
+        for (int i = chain.size() - 1; i >= 0; --i) {
+            TreeNode node = chain.get(i);
             if (node.getData() != null) {
                 result.append(node.getData().toString()).append("->");
             } else {
                 result.append("empty->");
             }
         }
-        return result.delete(result.length() - 2, result.length()).toString();
+        String path = result.delete(result.length() - 2, result.length()).toString();
+        TreeNodeImpl root = treeRoot();
+        if (root != null) {
+            cachedPath = path;
+            pathRoot = root;
+            pathShapeVersion = root.shapeVersion;
+            pathDataVersion = root.dataVersion;
+        }
+        return path;
+    }
+
+    private boolean isDepthValid() {
+        TreeNodeImpl root = cachedRoot;
+        return root != null && root.parent == null && root.shapeVersion == cachedShapeVersion;
+    }
+
+    private boolean isPathValid() {
+        TreeNodeImpl root = pathRoot;
+        return root != null && root.parent == null
+                && root.shapeVersion == pathShapeVersion && root.dataVersion == pathDataVersion;
+    }
+
+    /**
+     * Возвращает корень дерева (сам узел, если это корень) по кэшу, обновляя кэш корня и глубины, если он устарел.
+     * Подъем к корню идет только до первого предка с действительным кэшем; кэш обновляется и у всех пройденных
+     * предков, у которых вся цепочка до корня состоит из {@link TreeNodeImpl}.
+     *
+     * @return корень или <code>null</code>, если в цепочке до корня есть узлы других реализаций (тогда кэша нет)
+     */
+    TreeNodeImpl treeRoot() {
+        if (isDepthValid()) {
+            return cachedRoot;
+        }
+
+        List<TreeNode> chain = new ArrayList<>();
+        TreeNode anchor = this;
+        while (anchor != null && !(anchor instanceof TreeNodeImpl && ((TreeNodeImpl) anchor).isDepthValid())) {
+            chain.add(anchor);
+            anchor = anchor.getParent();
+        }
+
+        int depth;
+        TreeNodeImpl root;
+        if (anchor == null) {
+            TreeNode top = chain.get(chain.size() - 1);
+            depth = -1;
+            root = top instanceof TreeNodeImpl ? (TreeNodeImpl) top : null;
+        } else {
+            TreeNodeImpl cached = (TreeNodeImpl) anchor;
+            depth = cached.cachedDepth;
+            root = cached.cachedRoot;
+        }
+        for (int i = chain.size() - 1; i >= 0; --i) {
+            TreeNode node = chain.get(i);
+            ++depth;
+            if (!(node instanceof TreeNodeImpl)) {
+                // ниже узла другой реализации кэшировать нельзя
+                root = null;
+                continue;
+            }
+            TreeNodeImpl impl = (TreeNodeImpl) node;
+            impl.cachedRoot = root;
+            if (root != null) {
+                impl.cachedShapeVersion = root.shapeVersion;
+                impl.cachedDepth = depth;
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Возвращает узел, который хранит версии дерева, содержащего <code>node</code>: корень дерева,
+     *  а если корень другой реализации - самый верхний {@link TreeNodeImpl} в цепочке предков.
+     *  Для всех {@link TreeNodeImpl}-узлов поддерева любого {@link TreeNodeImpl} это один и тот же узел.
+     *
+     * @return узел с версиями или <code>null</code>, если в цепочке нет {@link TreeNodeImpl}
+     */
+    static TreeNodeImpl versionHolder(TreeNode node) {
+        if (node instanceof TreeNodeImpl) {
+            TreeNodeImpl root = ((TreeNodeImpl) node).treeRoot();
+            if (root != null) {
+                return root;
+            }
+        }
+        TreeNodeImpl holder = null;
+        for (; node != null; node = node.getParent()) {
+            if (node instanceof TreeNodeImpl) {
+                holder = (TreeNodeImpl) node;
+            }
+        }
+        return holder;
+    }
+
+    /**
+     * @return версия состава дерева (см. {@link #versionHolder(TreeNode)}): если она не изменилась, то в дерево
+     *  не добавлялись, из него не удалялись и в нем не перемещались узлы {@link TreeNodeImpl}
+     */
+    long structureVersion() {
+        return structureVersion;
     }
 
     /**
@@ -207,22 +533,74 @@ public class TreeNodeImpl implements TreeNode{
      * Объекты <code>data</code> должны сравниваться с помощью {@link Object#equals(Object)}, а если <code>data == null</code>,
      * тогда должен возвращаться дочерний узел, у которого <code>getData() == null</code>).
      *
+     * Если для дерева включен индекс данных ({@link #setDataIndexed(boolean)}), узел находится по индексу,
+     * без обхода дерева (результат тот же).
+     *
      * @param data Объект поиска; может быть равен <code>null</code>
      * @return Найденный узел. Или <code>null</code> если не было найдено узла, содержащего такой <code>data</code>.
      */
     @Override
     public TreeNode findChild(Object data) {
-        TreeNode node = null;
-        for (TreeNode child : children) {
-            if (Objects.equals(child.getData(), data)) {
-                node = child;
-                break;
-            } else {
-                node = child.findChild(data);
+        if (dataIndex != null) {
+            return dataIndex.findFirst(this, data);
+        }
+
+        Iterator<TreeNode> it = TreeTraversal.preOrder(this);
+        it.next();
+        while (it.hasNext()) {
+            TreeNode node = it.next();
+            if (Objects.equals(node.getData(), data)) {
+                return node;
             }
         }
+        return null;
+    }
 
-        return node;
+    /**
+     * Включает или выключает индекс "данные -&gt; узлы" для дерева с корнем в этом узле.<br/>
+     * Пока индекс включен, {@link #findChild(Object)} любого узла дерева находит узел по индексу,
+     * а не обходом дерева. Индекс обновляется в {@link #addChild(TreeNode)}, {@link #removeChild(TreeNode)}
+     * и {@link #setData(Object)}; дерево при этом должно меняться только через эти методы.
+     * Поддерево, добавленное в дерево с индексом, попадает в его индекс (а собственный индекс поддерева
+     * выключается); удаленное поддерево из индекса исключается.
+     *
+     * @param indexed <code>true</code> - построить индекс, <code>false</code> - удалить его
+     * @throws IllegalStateException если у узла есть родитель (индекс включается только для всего дерева)
+     */
+    public void setDataIndexed(boolean indexed) {
+        if (parent != null) throw new IllegalStateException();
+
+        if (indexed != (dataIndex != null)) {
+            setDataIndex(this, null, indexed ? new DataIndex() : null);
+        }
+    }
+
+    /**
+     * @return <code>true</code>, если для дерева, содержащего этот узел, включен индекс данных
+     */
+    public boolean isDataIndexed() {
+        return dataIndex != null;
+    }
+
+    /**
+     * Переключает все узлы поддерева <code>node</code> с индекса <code>previous</code> на индекс <code>index</code>
+     * (любой из них может быть <code>null</code>).<br/>
+     * Ссылка на индекс хранится в каждом узле, чтобы не искать корень при каждом изменении.
+     */
+    private static void setDataIndex(TreeNode node, DataIndex previous, DataIndex index) {
+        for (Iterator<TreeNode> it = TreeTraversal.preOrder(node); it.hasNext(); ) {
+            TreeNode current = it.next();
+            if (previous != null) {
+                previous.remove(current.getData(), current);
+            }
+            if (index != null) {
+                index.add(current.getData(), current);
+            }
+            if (current instanceof TreeNodeImpl) {
+                ((TreeNodeImpl) current).dataIndex = index;
+                ((TreeNodeImpl) current).retentionChanged();
+            }
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,330 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Двоичная сериализация поддерева {@link TreeNode} и быстрая загрузка его в {@link TreeNodeImpl}.<br/>
+ * Формат: заголовок (сигнатура и версия), затем узлы в прямом порядке обхода; для каждого узла - байт флагов
+ *  (развернут ли узел, есть ли данные), число детей (varint) и данные, записанные {@link DataCodec}.
+ *  Ссылок между узлами в потоке нет: структура восстанавливается по числам детей.<br/>
+ * Чтение идет за один проход без рекурсии: узлы создаются сразу с родителем, а списки детей - сразу нужного размера
+ *  (без {@link TreeNode#addChild(TreeNode)}). Файл можно читать через отображение в память ({@link #read(Path)}).
+ */
+public final class TreeNodeSerializer {
+    private static final int MAGIC = 0x54524545; // "TREE"
+    private static final int VERSION = 1;
+    private static final int EXPANDED = 1;
+    private static final int HAS_DATA = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Больше детей заранее не резервируется: число детей берется из файла, и в поврежденном файле
+     *  оно может быть любым. Если детей больше, список растет по мере добавления.
+     */
+    private static final int MAX_RESERVED_CHILDREN = 1 << 12;
+
+    /**
+     * Запись и чтение объектов данных узлов.
+     */
+    public interface DataCodec {
+        /**
+         * Строки: длина в байтах и UTF-8 (без ограничения {@link DataOutput#writeUTF(String)} в 64 КБ).
+         */
+        DataCodec STRING = new DataCodec() {
+            @Override
+            public void write(DataOutput out, Object data) throws IOException {
+                byte[] bytes = ((String) data).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            @Override
+            public Object read(DataInput in) throws IOException {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+
+        DataCodec INTEGER = new DataCodec() {
+            @Override
+            public void write(DataOutput out, Object data) throws IOException {
+                out.writeInt((Integer) data);
+            }
+
+            @Override
+            public Object read(DataInput in) throws IOException {
+                return in.readInt();
+            }
+        };
+
+        DataCodec LONG = new DataCodec() {
+            @Override
+            public void write(DataOutput out, Object data) throws IOException {
+                out.writeLong((Long) data);
+            }
+
+            @Override
+            public Object read(DataInput in) throws IOException {
+                return in.readLong();
+            }
+        };
+
+        /**
+         * Записывает объект данных (не <code>null</code>: отсутствие данных отмечается в флагах узла).
+         */
+        void write(DataOutput out, Object data) throws IOException;
+
+        /**
+         * Читает объект данных, записанный {@link #write(DataOutput, Object)}.
+         */
+        Object read(DataInput in) throws IOException;
+    }
+
+    private final DataCodec codec;
+
+    public TreeNodeSerializer(DataCodec codec) {
+        if (codec == null) throw new IllegalArgumentException();
+        this.codec = codec;
+    }
+
+    /**
+     * Записывает поддерево <code>root</code> в поток (поток не закрывается).
+     */
+    public void write(TreeNode root, OutputStream os) throws IOException {
+        if (root == null || os == null) throw new IllegalArgumentException();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        for (Iterator<TreeNode> it = TreeTraversal.preOrder(root); it.hasNext(); ) {
+            TreeNode node = it.next();
+            Object data = node.getData();
+            out.writeByte((node.isExpanded() ? EXPANDED : 0) | (data != null ? HAS_DATA : 0));
+            writeVarInt(out, node.getChildCount());
+            if (data != null) {
+                codec.write(out, data);
+            }
+        }
+        out.flush();
+    }
+
+    public void write(TreeNode root, Path file) throws IOException {
+        if (file == null) throw new IllegalArgumentException();
+        try (OutputStream os = Files.newOutputStream(file)) {
+            write(root, os);
+        }
+    }
+
+    /**
+     * Читает поддерево, записанное {@link #write(TreeNode, OutputStream)}.
+     * @return корень прочитанного дерева (без родителя)
+     * @throws IOException если поток не в этом формате или обрывается
+     */
+    public TreeNodeImpl read(InputStream is) throws IOException {
+        if (is == null) throw new IllegalArgumentException();
+        return read((DataInput) new DataInputStream(new BufferedInputStream(is, BUFFER_SIZE)));
+    }
+
+    /**
+     * Читает файл, отображенный в память: байты берутся прямо из страниц файла, без копирования
+     *  через буферы потоков. Размер файла ограничен 2 ГБ (ограничение {@link MappedByteBuffer}).
+     */
+    public TreeNodeImpl read(Path file) throws IOException {
+        if (file == null) throw new IllegalArgumentException();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("File is too large to map: " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(new ByteBufferInput(buffer));
+        }
+    }
+
+    private TreeNodeImpl read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a serialized tree");
+        int version = in.readUnsignedByte();
+        if (version != VERSION) throw new IOException("Unsupported version: " + version);
+
+        // на стеке - узлы текущего пути, у которых еще есть непрочитанные дети, и число этих детей
+        TreeNodeImpl[] nodes = new TreeNodeImpl[16];
+        int[] remaining = new int[16];
+        int depth = 0;
+        TreeNodeImpl root = null;
+        do {
+            TreeNodeImpl parent = depth == 0 ? null : nodes[depth - 1];
+            int flags = in.readUnsignedByte();
+            int childCount = readVarInt(in);
+            Object data = (flags & HAS_DATA) != 0 ? codec.read(in) : null;
+
+            TreeNodeImpl node = new TreeNodeImpl(parent, data);
+            if ((flags & EXPANDED) != 0) {
+                node.setExpandedFlag(true);
+            }
+            if (parent == null) {
+                root = node;
+            } else {
+                parent.mutableChildList().add(node);
+                // родитель, у которого это последний ребенок, снимается со стека сразу
+                if (--remaining[depth - 1] == 0) {
+                    --depth;
+                }
+            }
+            if (childCount > 0) {
+                node.mutableChildList(Math.min(childCount, MAX_RESERVED_CHILDREN));
+                if (depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                    remaining = Arrays.copyOf(remaining, depth * 2);
+                }
+                nodes[depth] = node;
+                remaining[depth++] = childCount;
+            }
+        } while (depth > 0);
+        return root;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed child count");
+    }
+
+    /**
+     * {@link DataInput} над {@link ByteBuffer}: конец буфера - {@link EOFException}, как у {@link DataInputStream}.
+     */
+    private static final class ByteBufferInput implements DataInput {
+        private final ByteBuffer buffer;
+
+        ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private ByteBuffer require(int bytes) throws EOFException {
+            if (buffer.remaining() < bytes) throw new EOFException();
+            return buffer;
+        }
+
+        @Override
+        public void readFully(byte[] b) throws IOException {
+            readFully(b, 0, b.length);
+        }
+
+        @Override
+        public void readFully(byte[] b, int off, int len) throws IOException {
+            require(len).get(b, off, len);
+        }
+
+        @Override
+        public int skipBytes(int n) {
+            int skipped = Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return require(1).get() != 0;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            return require(1).get();
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return require(1).get() & 0xFF;
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            return require(2).getShort();
+        }
+
+        @Override
+        public int readUnsignedShort() throws IOException {
+            return require(2).getShort() & 0xFFFF;
+        }
+
+        @Override
+        public char readChar() throws IOException {
+            return require(2).getChar();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return require(4).getInt();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return require(8).getLong();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return require(4).getFloat();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return require(8).getDouble();
+        }
+
+        /**
+         * Читает строку как {@link DataInputStream#readLine()}: байты до "\n", "\r" или "\r\n" (каждый байт -
+         *  символ с тем же кодом).
+         *
+         * @return строка без конца строки или <code>null</code>, если буфер уже прочитан до конца
+         */
+        @Override
+        public String readLine() {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+            StringBuilder result = new StringBuilder();
+            while (buffer.hasRemaining()) {
+                int c = buffer.get() & 0xFF;
+                if (c == '\n') {
+                    break;
+                }
+                if (c == '\r') {
+                    if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+                        buffer.get();
+                    }
+                    break;
+                }
+                result.append((char) c);
+            }
+            return result.toString();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+    }
+}
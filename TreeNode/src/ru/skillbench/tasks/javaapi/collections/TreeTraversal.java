@@ -0,0 +1,167 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Обходы поддерева {@link TreeNode} без рекурсии: вместо стека вызовов используется явный стек,
+ *  поэтому глубина дерева ограничена только памятью, а не размером стека потока.<br/>
+ * Обходы в глубину хранят по одному итератору дочерних узлов на каждый уровень текущего пути
+ *  (O(глубина) памяти), обход в ширину - очередь узлов текущего и следующего уровней.<br/>
+ * Все итераторы начинают с самого узла <code>root</code>. Менять дерево во время обхода нельзя
+ *  (поведение такое же, как у итератора изменяемой коллекции).
+ */
+public final class TreeTraversal {
+    private static final Predicate<TreeNode> ALL = node -> true;
+
+    private TreeTraversal() {
+    }
+
+    /**
+     * Обход в глубину в прямом порядке: узел, затем поддеревья его детей по порядку.
+     */
+    public static Iterator<TreeNode> preOrder(TreeNode root) {
+        return new PreOrder(root, ALL);
+    }
+
+    /**
+     * Обход в глубину в прямом порядке, который заходит в детей узла, только если для узла
+     *  <code>descend</code> возвращает <code>true</code> (сам узел при этом все равно возвращается).<br/>
+     * Например, <code>preOrder(root, TreeNode::isExpanded)</code> перебирает строки, видимые в UI-дереве.
+     */
+    public static Iterator<TreeNode> preOrder(TreeNode root, Predicate<? super TreeNode> descend) {
+        return new PreOrder(root, descend);
+    }
+
+    /**
+     * Обход в глубину в обратном порядке: поддеревья детей по порядку, затем сам узел.
+     */
+    public static Iterator<TreeNode> postOrder(TreeNode root) {
+        return new PostOrder(root);
+    }
+
+    /**
+     * Обход в ширину: узел, затем все узлы следующего уровня слева направо и т.д.
+     */
+    public static Iterator<TreeNode> breadthFirst(TreeNode root) {
+        return new BreadthFirst(root);
+    }
+
+    public static Stream<TreeNode> preOrderStream(TreeNode root) {
+        return stream(preOrder(root));
+    }
+
+    public static Stream<TreeNode> postOrderStream(TreeNode root) {
+        return stream(postOrder(root));
+    }
+
+    public static Stream<TreeNode> breadthFirstStream(TreeNode root) {
+        return stream(breadthFirst(root));
+    }
+
+    /**
+     * Дочерние узлы <code>node</code>; для листа - пустой итератор, даже если реализация узла
+     *  не создает коллекцию детей до добавления первого из них.
+     */
+    static Iterator<TreeNode> children(TreeNode node) {
+        return node.isLeaf() ? Collections.<TreeNode>emptyIterator() : node.getChildrenIterator();
+    }
+
+    private static Stream<TreeNode> stream(Iterator<TreeNode> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static final class PreOrder implements Iterator<TreeNode> {
+        private final Predicate<? super TreeNode> descend;
+        private final Deque<Iterator<TreeNode>> stack = new ArrayDeque<>();
+        private TreeNode next;
+
+        PreOrder(TreeNode root, Predicate<? super TreeNode> descend) {
+            this.descend = descend;
+            this.next = root;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public TreeNode next() {
+            TreeNode node = next;
+            if (node == null) throw new NoSuchElementException();
+
+            if (descend.test(node) && !node.isLeaf()) {
+                stack.push(node.getChildrenIterator());
+            }
+            next = null;
+            while (!stack.isEmpty()) {
+                Iterator<TreeNode> top = stack.peek();
+                if (top.hasNext()) {
+                    next = top.next();
+                    break;
+                }
+                stack.pop();
+            }
+            return node;
+        }
+    }
+
+    private static final class PostOrder implements Iterator<TreeNode> {
+        private final Deque<TreeNode> nodes = new ArrayDeque<>();
+        private final Deque<Iterator<TreeNode>> iterators = new ArrayDeque<>();
+
+        PostOrder(TreeNode root) {
+            nodes.push(root);
+            iterators.push(children(root));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !nodes.isEmpty();
+        }
+
+        @Override
+        public TreeNode next() {
+            if (nodes.isEmpty()) throw new NoSuchElementException();
+
+            while (true) {
+                Iterator<TreeNode> top = iterators.peek();
+                if (!top.hasNext()) {
+                    iterators.pop();
+                    return nodes.pop();
+                }
+                TreeNode child = top.next();
+                nodes.push(child);
+                iterators.push(children(child));
+            }
+        }
+    }
+
+    private static final class BreadthFirst implements Iterator<TreeNode> {
+        private final Deque<TreeNode> queue = new ArrayDeque<>();
+
+        BreadthFirst(TreeNode root) {
+            queue.add(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public TreeNode next() {
+            TreeNode node = queue.poll();
+            if (node == null) throw new NoSuchElementException();
+
+            for (Iterator<TreeNode> it = children(node); it.hasNext(); ) {
+                queue.add(it.next());
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package ru.skillbench.tasks.javaapi.collections;
+
+import java.util.*;
+
+/**
+ * Модель видимых строк UI-дерева: узлы, которые видны при текущих признаках развернутости, в порядке показа -
+ *  то же, что дает <code>TreeTraversal.preOrder(root, TreeNode::isExpanded)</code>, но без обхода всего дерева
+ *  при каждом изменении.<br/>
+ * Строки хранятся в неявном декартовом дереве (ключ - позиция строки, а не значение), поэтому доступ к строке
+ *  по номеру и номер строки узла - за O(log n), а разворачивание и сворачивание узла ({@link #setExpanded(TreeNode, boolean)},
+ *  {@link #refresh(TreeNode)}) вырезает или вставляет целый отрезок строк за O(число изменившихся строк + log n).
+ *  Балансировка случайная: при слиянии корнем становится корень одной из частей с вероятностью,
+ *  пропорциональной ее размеру, так что ожидаемая высота - O(log n).<br/>
+ * Модель не следит за деревом сама: после изменений в обход модели (развернутость, добавление и удаление детей)
+ *  нужно вызвать {@link #refresh(TreeNode)} для ближайшего общего предка измененных узлов.
+ *  Узлы сравниваются через {@link Object#equals(Object)} и {@link Object#hashCode()}. Не потокобезопасно.
+ */
+public final class VisibleRowModel {
+    private final Map<TreeNode, Row> rows = new HashMap<>();
+    private final Random random = new Random();
+    private Row top;
+
+    public VisibleRowModel(TreeNode root) {
+        if (root == null) throw new IllegalArgumentException();
+        top = build(visibleSubtree(root), true);
+    }
+
+    /**
+     * @return число видимых строк (корень виден всегда)
+     */
+    public int getRowCount() {
+        return size(top);
+    }
+
+    /**
+     * @return узел в строке <code>row</code>
+     * @throws IndexOutOfBoundsException если <code>row &lt; 0</code> или <code>row &gt;= getRowCount()</code>
+     */
+    public TreeNode getRow(int row) {
+        return rowAt(row).node;
+    }
+
+    /**
+     * @return уровень вложенности строки (0 для корня) - например, для отступа в UI
+     * @throws IndexOutOfBoundsException если <code>row &lt; 0</code> или <code>row &gt;= getRowCount()</code>
+     */
+    public int getLevel(int row) {
+        return rowAt(row).level;
+    }
+
+    /**
+     * @return узлы строк с <code>from</code> (включительно) по <code>to</code> (не включительно) -
+     *  например, видимая часть списка; O(log n + to - from)
+     * @throws IndexOutOfBoundsException если границы выходят за пределы строк
+     */
+    public List<TreeNode> getRows(int from, int to) {
+        if (from < 0 || to > getRowCount() || from > to) throw new IndexOutOfBoundsException(from + ".." + to);
+        List<TreeNode> result = new ArrayList<>(to - from);
+        for (Row row = from == to ? null : rowAt(from); result.size() < to - from; row = successor(row)) {
+            result.add(row.node);
+        }
+        return result;
+    }
+
+    /**
+     * @return номер строки узла или -1, если узел сейчас не виден
+     */
+    public int getRowIndex(TreeNode node) {
+        Row row = rows.get(node);
+        return row == null ? -1 : indexOf(row);
+    }
+
+    /**
+     * Разворачивает или сворачивает узел (по контракту {@link TreeNode#setExpanded(boolean)} - вместе со всем
+     *  его поддеревом) и обновляет строки под ним.
+     */
+    public void setExpanded(TreeNode node, boolean expanded) {
+        node.setExpanded(expanded);
+        refresh(node);
+    }
+
+    /**
+     * Заново строит строки под узлом <code>node</code> (сама строка узла остается на месте): убирает прежние
+     *  видимые строки его поддерева и вставляет строки, видимые теперь. Если узел сейчас не виден, ничего не делает.
+     */
+    public void refresh(TreeNode node) {
+        Row row = rows.get(node);
+        if (row == null) {
+            return;
+        }
+        int index = indexOf(row);
+        // прежние строки поддерева идут сразу за строкой узла, пока уровень больше уровня узла
+        int removed = 0;
+        for (Row next = successor(row); next != null && next.level > row.level; next = successor(next)) {
+            ++removed;
+        }
+
+        Row[] parts = split(top, index + 1);
+        Row[] middle = split(parts[1], removed);
+        forget(middle[0]);
+        List<TreeNode> added = visibleSubtree(node);
+        added = added.subList(1, added.size());
+        top = merge(merge(parts[0], build(added, false)), middle[1]);
+        top.parent = null;
+    }
+
+    /**
+     * Видимые узлы поддерева <code>node</code> (начиная с него самого) в порядке показа.
+     */
+    private static List<TreeNode> visibleSubtree(TreeNode node) {
+        List<TreeNode> result = new ArrayList<>();
+        for (Iterator<TreeNode> it = TreeTraversal.preOrder(node, TreeNode::isExpanded); it.hasNext(); ) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Строит сбалансированное дерево строк для узлов, идущих в порядке показа.
+     *  Уровень строки - уровень строки родителя плюс один (родитель уже есть в модели или идет раньше).
+     * @param first <code>true</code>, если первый узел - корень всего дерева (уровень 0)
+     */
+    private Row build(List<TreeNode> nodes, boolean first) {
+        Row[] built = new Row[nodes.size()];
+        for (int i = 0; i < built.length; ++i) {
+            TreeNode node = nodes.get(i);
+            int level = first && i == 0 ? 0 : rows.get(node.getParent()).level + 1;
+            built[i] = new Row(node, level);
+            rows.put(node, built[i]);
+        }
+        return link(built, 0, built.length);
+    }
+
+    /**
+     * Связывает строки <code>built[from..to)</code> в идеально сбалансированное дерево (глубина рекурсии - log n).
+     */
+    private static Row link(Row[] built, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Row row = built[middle];
+        row.left = link(built, from, middle);
+        row.right = link(built, middle + 1, to);
+        update(row);
+        return row;
+    }
+
+    private void forget(Row subtree) {
+        if (subtree == null) {
+            return;
+        }
+        Deque<Row> stack = new ArrayDeque<>();
+        stack.push(subtree);
+        while (!stack.isEmpty()) {
+            Row row = stack.pop();
+            rows.remove(row.node);
+            if (row.left != null) {
+                stack.push(row.left);
+            }
+            if (row.right != null) {
+                stack.push(row.right);
+            }
+        }
+    }
+
+    private Row rowAt(int index) {
+        if (index < 0 || index >= getRowCount()) {
+            throw new IndexOutOfBoundsException("Row: " + index + ", Rows: " + getRowCount());
+        }
+        Row row = top;
+        while (true) {
+            int leftSize = size(row.left);
+            if (index < leftSize) {
+                row = row.left;
+            } else if (index == leftSize) {
+                return row;
+            } else {
+                index -= leftSize + 1;
+                row = row.right;
+            }
+        }
+    }
+
+    private static int indexOf(Row row) {
+        int index = size(row.left);
+        for (Row child = row, parent = row.parent; parent != null; child = parent, parent = parent.parent) {
+            if (parent.right == child) {
+                index += size(parent.left) + 1;
+            }
+        }
+        return index;
+    }
+
+    private static Row successor(Row row) {
+        if (row.right != null) {
+            row = row.right;
+            while (row.left != null) {
+                row = row.left;
+            }
+            return row;
+        }
+        while (row.parent != null && row.parent.right == row) {
+            row = row.parent;
+        }
+        return row.parent;
+    }
+
+    /**
+     * Делит дерево на первые <code>count</code> строк и остальные.
+     */
+    private static Row[] split(Row row, int count) {
+        if (row == null) {
+            return new Row[2];
+        }
+        Row[] result;
+        if (size(row.left) >= count) {
+            result = split(row.left, count);
+            row.left = result[1];
+            result[1] = row;
+        } else {
+            result = split(row.right, count - size(row.left) - 1);
+            row.right = result[0];
+            result[0] = row;
+        }
+        update(row);
+        for (Row part : result) {
+            if (part != null) {
+                part.parent = null;
+            }
+        }
+        return result;
+    }
+
+    private Row merge(Row left, Row right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (random.nextInt(left.size + right.size) < left.size) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    private static void update(Row row) {
+        row.size = 1 + size(row.left) + size(row.right);
+        if (row.left != null) {
+            row.left.parent = row;
+        }
+        if (row.right != null) {
+            row.right.parent = row;
+        }
+    }
+
+    private static int size(Row row) {
+        return row == null ? 0 : row.size;
+    }
+
+    private static final class Row {
+        final TreeNode node;
+        final int level;
+        Row left;
+        Row right;
+        Row parent;
+        int size = 1;
+
+        Row(TreeNode node, int level) {
+            this.node = node;
+            this.level = level;
+        }
+    }
+}
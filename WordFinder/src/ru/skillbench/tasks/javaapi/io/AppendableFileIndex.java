@@ -0,0 +1,203 @@
+package ru.skillbench.tasks.javaapi.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.zip.CRC32;
+
+/**
+ * Множество слов файла, которое можно дополнять, когда в конец файла дописываются данные.<br/>
+ * Слова хранятся в {@link ConcurrentSkipListSet}, так что поиск идет одновременно с дополнением.
+ * Разобранными считаются байты до {@link #length}; последнее слово файла могло быть дописано не до конца,
+ *  поэтому участок после последнего пробельного байта (хвост) при дополнении разбирается заново,
+ *  а слова, которые встречались только в старом хвосте и не встретились снова, удаляются.<br/>
+ * Дописывание отличается от перезаписи по длине файла, по первым и последним байтам разобранной части
+ *  (отпечатку, который проверяется сразу) и по контрольной сумме CRC32 всей разобранной части: она дополняется
+ *  при разборе дописанных байтов, а при каждом изменении файла разобранная часть перечитывается и сверяется с ней,
+ *  так что правка в середине файла тоже считается перезаписью. Перечитывание без разбора на слова намного
+ *  дешевле перестроения. Если файл перезаписан, {@link #update()} возвращает <code>false</code>
+ *  и множество нужно построить заново через {@link #build(Path, Charset)}.
+ * Дополнять можно только несжатые файлы в кодировках, где пробелы распознаются по байтам
+ *  (UTF-8, US-ASCII, ISO-8859-1); любое изменение других файлов считается перезаписью.
+ */
+final class AppendableFileIndex {
+    private static final int FINGERPRINT_SIZE = 4096;
+    private static final int CHECKSUM_BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final Charset charset;
+    private final NavigableSet<String> words = new ConcurrentSkipListSet<>();
+    private boolean appendable;
+    private long length;
+    private long tailStart;
+    private Set<String> tailWords = Collections.emptySet();
+    private byte[] head;
+    private byte[] end;
+    /**
+     * Контрольная сумма байтов <code>[0, length)</code>.
+     */
+    private final CRC32 checksum = new CRC32();
+
+    private AppendableFileIndex(Path file, Charset charset) {
+        this.file = file;
+        this.charset = charset;
+    }
+
+    /**
+     * Строит множество слов файла целиком.
+     */
+    static AppendableFileIndex build(Path file, Charset charset) throws IOException {
+        AppendableFileIndex index = new AppendableFileIndex(file, charset);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            index.appendable = MappedWordIndexer.isAsciiCompatible(charset) && !CompressedInput.isCompressed(channel);
+            if (index.appendable) {
+                index.append(channel, 0, size);
+            } else {
+                Set<String> all = new HashSet<>();
+                MappedWordIndexer.index(channel, charset, all);
+                index.words.addAll(all);
+                index.remember(channel, size);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return множество слов; меняется при {@link #update()}
+     */
+    NavigableSet<String> words() {
+        return words;
+    }
+
+    /**
+     * Дополняет множество словами, дописанными в конец файла.
+     * @return <code>false</code>, если файл не дописан, а перезаписан (множество при этом не меняется)
+     */
+    boolean update() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < length || !matches(channel) || !checksumMatches(channel)) {
+                return false;
+            }
+            if (size == length) {
+                return true;
+            }
+            if (!appendable) {
+                return false;
+            }
+            append(channel, tailStart, size);
+            return true;
+        }
+    }
+
+    /**
+     * Разбирает байты <code>[from, size)</code>: все, что до последнего пробельного байта, добавляется сразу,
+     *  а слова хвоста запоминаются, чтобы при следующем дополнении убрать те из них, что не подтвердятся.
+     */
+    private void append(FileChannel channel, long from, long size) throws IOException {
+        long boundary = lastBoundary(channel, from, size);
+        Set<String> body = new HashSet<>();
+        MappedWordIndexer.index(channel, from, boundary, charset, body);
+        Set<String> tail = new HashSet<>();
+        MappedWordIndexer.index(channel, boundary, size, charset, tail);
+
+        words.addAll(body);
+        Set<String> added = new HashSet<>();
+        for (String word : tail) {
+            boolean onlyInOldTail = tailWords.contains(word) && !body.contains(word);
+            if (words.add(word) || onlyInOldTail) {
+                added.add(word);
+            }
+        }
+        for (String word : tailWords) {
+            if (!body.contains(word) && !tail.contains(word)) {
+                words.remove(word);
+            }
+        }
+        tailWords = added;
+        tailStart = boundary;
+        remember(channel, size);
+    }
+
+    private void remember(FileChannel channel, long size) throws IOException {
+        update(checksum, channel, length, size);
+        length = size;
+        head = read(channel, 0, (int) Math.min(FINGERPRINT_SIZE, size));
+        end = read(channel, Math.max(0, size - FINGERPRINT_SIZE), (int) Math.min(FINGERPRINT_SIZE, size));
+    }
+
+    /**
+     * Проверяет, что первые и последние байты разобранной части файла не изменились.
+     */
+    private boolean matches(FileChannel channel) throws IOException {
+        return Arrays.equals(head, read(channel, 0, head.length))
+                && Arrays.equals(end, read(channel, length - end.length, end.length));
+    }
+
+    /**
+     * Проверяет, что контрольная сумма байтов <code>[0, length)</code> не изменилась.
+     */
+    private boolean checksumMatches(FileChannel channel) throws IOException {
+        CRC32 current = new CRC32();
+        update(current, channel, 0, length);
+        return current.getValue() == checksum.getValue();
+    }
+
+    /**
+     * Дополняет контрольную сумму байтами <code>[from, to)</code>.
+     * @throws EOFException если файл стал короче <code>to</code>
+     */
+    private static void update(CRC32 crc, FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(CHECKSUM_BUFFER_SIZE, Math.max(1, to - from)));
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) throw new EOFException();
+            buffer.flip();
+            crc.update(buffer);
+            position += read;
+        }
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+            // читаем до конца
+        }
+        return buffer.hasRemaining() ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array();
+    }
+
+    /**
+     * Находит позицию за последним пробельным байтом в диапазоне <code>[from, to)</code>.
+     * @return найденная позиция или <code>from</code>, если пробелов нет
+     */
+    private static long lastBoundary(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = to;
+        while (position > from) {
+            int length = (int) Math.min(buffer.capacity(), position - from);
+            buffer.clear();
+            buffer.limit(length);
+            long start = position - length;
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+                // читаем порцию целиком
+            }
+            for (int i = buffer.position() - 1; i >= 0; --i) {
+                if (MappedWordIndexer.isSpace(buffer.get(i))) {
+                    return start + i + 1;
+                }
+            }
+            position = start;
+        }
+        return from;
+    }
+}
@@ -0,0 +1,73 @@
+package ru.skillbench.tasks.javaapi.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Распознает сжатые данные по сигнатуре (magic bytes) и распаковывает их на лету:
+ *  gzip - через {@link GZIPInputStream}, Zstandard - через {@link ZstdInputStream}.<br/>
+ * Распаковка идет в отдельном потоке ({@link PipelinedInputStream}), одновременно с разбором текста.
+ */
+final class CompressedInput {
+    private static final int GZIP_MAGIC = 0x8B1F;
+
+    private CompressedInput() {
+    }
+
+    /**
+     * Возвращает поток с распакованными данными, если <code>is</code> сжат,
+     *  или поток с теми же данными, что и <code>is</code>, если нет.
+     */
+    static InputStream open(InputStream is) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(is, 1 << 16);
+        in.mark(4);
+        byte[] magic = new byte[4];
+        int n = 0;
+        int read;
+        while (n < magic.length && (read = in.read(magic, n, magic.length - n)) != -1) {
+            n += read;
+        }
+        in.reset();
+
+        switch (format(ByteBuffer.wrap(magic, 0, n))) {
+            case GZIP:
+                return new PipelinedInputStream(new GZIPInputStream(in, 1 << 16));
+            case ZSTD:
+                return new PipelinedInputStream(new ZstdInputStream(in));
+            default:
+                return in;
+        }
+    }
+
+    /**
+     * Проверяет по первым байтам файла, сжат ли он.
+     */
+    static boolean isCompressed(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        long position = 0;
+        int n;
+        while (magic.hasRemaining() && (n = channel.read(magic, position)) > 0) {
+            position += n;
+        }
+        magic.flip();
+        return format(magic) != Format.PLAIN;
+    }
+
+    private enum Format { PLAIN, GZIP, ZSTD }
+
+    private static Format format(ByteBuffer magic) {
+        magic.order(ByteOrder.LITTLE_ENDIAN);
+        if (magic.remaining() >= 2 && (magic.getShort(magic.position()) & 0xFFFF) == GZIP_MAGIC) {
+            return Format.GZIP;
+        }
+        if (magic.remaining() >= 4 && magic.getInt(magic.position()) == ZstdInputStream.MAGIC) {
+            return Format.ZSTD;
+        }
+        return Format.PLAIN;
+    }
+}
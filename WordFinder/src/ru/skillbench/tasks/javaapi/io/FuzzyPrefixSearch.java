@@ -0,0 +1,138 @@
+package ru.skillbench.tasks.javaapi.io;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NavigableSet;
+
+/**
+ * Нечеткий поиск по началу слова: находит слова, у которых есть начало, отличающееся от образца
+ *  не более чем на <code>maxEdits</code> правок (вставка, удаление или замена символа, расстояние Левенштейна).<br/>
+ * Отсортированное множество слов обходится как префиксное дерево (trie): строка матрицы расстояний
+ *  считается один раз для каждого символа пути, а у соседних слов общее начало не пересчитывается.
+ * Как только начало слова совпадает с образцом, все слова с этим началом берутся целиком;
+ *  как только начало становится безнадежным (все расстояния в строке больше <code>maxEdits</code>),
+ *  все слова с этим началом пропускаются. Так что работа пропорциональна числу посещенных узлов дерева,
+ *  а не размеру словаря.
+ */
+final class FuzzyPrefixSearch {
+    private static final int NONE = 0;
+    private static final int MATCH = 1;
+    private static final int DEAD = 2;
+
+    private final String pattern;
+    private final int maxEdits;
+    /**
+     * <code>rows[j][i]</code> - расстояние между первыми <code>i</code> символами образца
+     *  и первыми <code>j</code> символами текущего пути.
+     */
+    private int[][] rows;
+    private char[] path = new char[16];
+    private int depth;
+
+    private FuzzyPrefixSearch(String pattern, int maxEdits) {
+        this.pattern = pattern;
+        this.maxEdits = maxEdits;
+        rows = new int[16][];
+        rows[0] = new int[pattern.length() + 1];
+        for (int i = 0; i <= pattern.length(); ++i) {
+            rows[0][i] = i;
+        }
+    }
+
+    /**
+     * Добавляет в <code>result</code> (в порядке возрастания) все слова из <code>words</code>,
+     *  начало которых отличается от <code>pattern</code> не более чем на <code>maxEdits</code> правок.
+     */
+    static void find(NavigableSet<String> words, String pattern, int maxEdits, Collection<String> result) {
+        FuzzyPrefixSearch search = new FuzzyPrefixSearch(pattern, maxEdits);
+        if (pattern.length() <= maxEdits) {
+            result.addAll(words);
+            return;
+        }
+        String word = words.isEmpty() ? null : words.first();
+        while (word != null) {
+            int state = search.advance(word);
+            if (state == NONE) {
+                word = words.higher(word);
+                continue;
+            }
+            String prefix = word.substring(0, search.depth);
+            if (state == MATCH) {
+                result.addAll(WordFinderImpl.startingWith(words, prefix));
+            }
+            String upper = WordFinderImpl.upperBound(prefix);
+            word = upper == null ? null : words.ceiling(upper);
+        }
+    }
+
+    /**
+     * То же, что и {@link #find(NavigableSet, String, int, Collection)}, но для слов, которые можно
+     *  только перебрать подряд в порядке возрастания: слова с найденным или безнадежным началом
+     *  не пропускаются, но и не пересчитываются.
+     */
+    static void find(Iterator<String> words, String pattern, int maxEdits, Collection<String> result) {
+        FuzzyPrefixSearch search = new FuzzyPrefixSearch(pattern, maxEdits);
+        String prefix = pattern.length() <= maxEdits ? "" : null;
+        boolean matched = prefix != null;
+        while (words.hasNext()) {
+            String word = words.next();
+            if (prefix == null || !word.startsWith(prefix)) {
+                int state = search.advance(word);
+                prefix = state == NONE ? null : word.substring(0, search.depth);
+                matched = state == MATCH;
+            }
+            if (matched) {
+                result.add(word);
+            }
+        }
+    }
+
+    /**
+     * Переходит к пути <code>word</code>, переиспользуя строки общего с текущим путем начала,
+     *  и идет по нему, пока начало не совпадет с образцом или не станет безнадежным.
+     * @return {@link #MATCH} или {@link #DEAD} (длина такого начала - в {@link #depth})
+     *  или {@link #NONE}, если слово кончилось раньше
+     */
+    private int advance(String word) {
+        int common = 0;
+        int max = Math.min(depth, word.length());
+        while (common < max && path[common] == word.charAt(common)) {
+            ++common;
+        }
+        depth = common;
+
+        int m = pattern.length();
+        while (depth < word.length()) {
+            char c = word.charAt(depth);
+            if (depth + 1 == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+                path = Arrays.copyOf(path, path.length * 2);
+            }
+            int[] previous = rows[depth];
+            int[] row = rows[depth + 1];
+            if (row == null) {
+                row = rows[depth + 1] = new int[m + 1];
+            }
+            path[depth++] = c;
+
+            row[0] = depth;
+            int min = depth;
+            for (int i = 1; i <= m; ++i) {
+                int cost = pattern.charAt(i - 1) == c ? 0 : 1;
+                int value = Math.min(Math.min(previous[i] + 1, row[i - 1] + 1), previous[i - 1] + cost);
+                row[i] = value;
+                if (value < min) {
+                    min = value;
+                }
+            }
+            if (row[m] <= maxEdits) {
+                return MATCH;
+            }
+            if (min > maxEdits) {
+                return DEAD;
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,246 @@
+package ru.skillbench.tasks.javaapi.io;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Строит множество слов файла, отображая его в память через {@link FileChannel#map}
+ *  и находя границы слов прямо в байтах отображенного буфера.<br/>
+ * Повторы слов отсеиваются через {@link HashSet}, а сортируется уже только набор различных слов.<br/>
+ * Для кодировок, в которых ASCII-пробелы не могут встретиться внутри многобайтового символа
+ *  (UTF-8, US-ASCII, ISO-8859-1), файл можно делить на участки по пробельным байтам
+ *  и разбирать их параллельно. Остальные кодировки читаются последовательно через {@link WordTokenizer}.
+ */
+final class MappedWordIndexer {
+    /**
+     * Максимальный размер одного отображения: участок файла больше этого размера отображается частями.
+     */
+    static final int MAX_MAPPING = 1 << 28;
+    /**
+     * Файлы меньше этого размера всегда разбираются последовательно.
+     */
+    static final long PARALLEL_THRESHOLD = 1 << 24;
+
+    private final Charset charset;
+    private final Collection<String> words;
+    private final WordTokenizer tokenizer;
+    private final byte[] chunk = new byte[1 << 16];
+    private byte[] wordBytes = new byte[64];
+    private int wordLength;
+
+    private MappedWordIndexer(Charset charset, Collection<String> words) {
+        this.charset = charset;
+        this.words = words;
+        this.tokenizer = new WordTokenizer(words);
+    }
+
+    /**
+     * Строит отсортированное множество слов всего файла.
+     * @param parallelism число участков, которые разбираются одновременно (1 - последовательный разбор)
+     */
+    static NavigableSet<String> index(FileChannel channel, Charset charset, int parallelism) throws IOException {
+        long size = channel.size();
+        if (parallelism <= 1 || size < PARALLEL_THRESHOLD || !isAsciiCompatible(charset)
+                || CompressedInput.isCompressed(channel)) {
+            Set<String> words = new HashSet<>();
+            index(channel, charset, words);
+            return new TreeSet<>(words);
+        }
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long step = (size + parallelism - 1) / parallelism;
+        for (int i = 1; i < parallelism; ++i) {
+            long bound = nextBoundary(channel, Math.max(i * step, bounds.get(bounds.size() - 1)), size);
+            if (bound > bounds.get(bounds.size() - 1) && bound < size) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(size);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<Set<String>>> parts = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.size(); ++i) {
+                long from = bounds.get(i);
+                long to = bounds.get(i + 1);
+                parts.add(executor.submit(() -> {
+                    Set<String> words = new HashSet<>();
+                    index(channel, from, to, charset, words);
+                    return words;
+                }));
+            }
+            return merge(parts);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Последовательно добавляет в <code>words</code> все слова файла.<br/>
+     * Сжатый файл (gzip, Zstandard) распаковывается на лету и разбирается как поток.
+     */
+    static void index(FileChannel channel, Charset charset, Collection<String> words) throws IOException {
+        if (CompressedInput.isCompressed(channel)) {
+            WordTokenizer tokenizer = new WordTokenizer(words);
+            try (Reader reader = new InputStreamReader(
+                    CompressedInput.open(Channels.newInputStream(channel)), charset)) {
+                tokenizer.feed(reader);
+            }
+            tokenizer.finish();
+        } else if (isAsciiCompatible(charset)) {
+            index(channel, 0, channel.size(), charset, words);
+        } else {
+            WordTokenizer tokenizer = new WordTokenizer(words);
+            tokenizer.feed(Channels.newReader(channel, charset.newDecoder(), -1));
+            tokenizer.finish();
+        }
+    }
+
+    /**
+     * Добавляет в <code>words</code> слова из байтов файла в диапазоне <code>[from, to)</code>.<br/>
+     * Границы диапазона должны приходиться на пробельные символы, начало или конец файла.
+     */
+    static void index(FileChannel channel, long from, long to, Charset charset,
+                      Collection<String> words) throws IOException {
+        MappedWordIndexer indexer = new MappedWordIndexer(charset, words);
+        long position = from;
+        while (position < to) {
+            long end = to;
+            if (end - position > MAX_MAPPING) {
+                end = nextBoundary(channel, position + MAX_MAPPING, to);
+            }
+            indexer.scan(channel.map(FileChannel.MapMode.READ_ONLY, position, end - position));
+            position = end;
+        }
+    }
+
+    /**
+     * Объединяет множества слов, построенные для отдельных участков, в одно отсортированное множество.
+     */
+    static NavigableSet<String> merge(List<Future<Set<String>>> parts) throws IOException {
+        Set<String> result = null;
+        for (Future<Set<String>> part : parts) {
+            Set<String> words;
+            try {
+                words = part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            if (result == null || words.size() > result.size()) {
+                Set<String> smaller = result;
+                result = words;
+                words = smaller;
+            }
+            if (words != null) {
+                result.addAll(words);
+            }
+        }
+        return result == null ? new TreeSet<>() : new TreeSet<>(result);
+    }
+
+    static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    static boolean isSpace(byte b) {
+        return b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+    }
+
+    /**
+     * Находит первый пробельный байт, начиная с позиции <code>position</code>.
+     * @return позиция найденного байта или <code>limit</code>, если до него пробелов нет
+     */
+    static long nextBoundary(FileChannel channel, long position, long limit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < limit) {
+            buffer.clear();
+            if (limit - position < buffer.capacity()) {
+                buffer.limit((int) (limit - position));
+            }
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; ++i) {
+                if (isSpace(buffer.get(i))) {
+                    return position + i;
+                }
+            }
+            position += n;
+        }
+        return limit;
+    }
+
+    private void scan(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            int n = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, n);
+            int start = 0;
+            for (int i = 0; i < n; ++i) {
+                if (isSpace(chunk[i])) {
+                    if (wordLength > 0) {
+                        append(start, i);
+                        emit(wordBytes, 0, wordLength);
+                        wordLength = 0;
+                    } else if (i > start) {
+                        emit(chunk, start, i - start);
+                    }
+                    start = i + 1;
+                }
+            }
+            append(start, n);
+        }
+        if (wordLength > 0) {
+            emit(wordBytes, 0, wordLength);
+            wordLength = 0;
+        }
+    }
+
+    /**
+     * Дописывает часть слова, разрезанного границей порции, в <code>wordBytes</code>.
+     */
+    private void append(int start, int end) {
+        int length = end - start;
+        if (wordLength + length > wordBytes.length) {
+            wordBytes = Arrays.copyOf(wordBytes, Math.max(wordLength + length, wordBytes.length * 2));
+        }
+        System.arraycopy(chunk, start, wordBytes, wordLength, length);
+        wordLength += length;
+    }
+
+    private void emit(byte[] bytes, int offset, int length) {
+        String word = new String(bytes, offset, length, charset);
+        boolean ascii = true;
+        for (int i = offset; i < offset + length; ++i) {
+            if (bytes[i] < 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            words.add(word.toLowerCase());
+        } else {
+            // пробелы вне ASCII (например, U+2003) по байтам не распознаются
+            tokenizer.feed(word);
+            tokenizer.finish();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ru.skillbench.tasks.javaapi.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Читает исходный поток в отдельном потоке-читателе порциями фиксированного размера
+ *  и отдает их через очередь, так что чтение (например, распаковка) и обработка прочитанного идут одновременно.<br/>
+ * Буферы порций переиспользуются; исходный поток закрывается потоком-читателем.
+ */
+final class PipelinedInputStream extends InputStream {
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int CHUNKS = 4;
+
+    private static final class Chunk {
+        final byte[] data = new byte[CHUNK_SIZE];
+        int length;
+    }
+
+    private static final Chunk END = new Chunk();
+
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNKS);
+    private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(CHUNKS + 1);
+    private final Thread reader;
+    private volatile IOException failure;
+
+    private Chunk current;
+    private int position;
+    private boolean finished;
+
+    PipelinedInputStream(InputStream source) {
+        for (int i = 0; i < CHUNKS; ++i) {
+            free.add(new Chunk());
+        }
+        reader = new Thread(() -> pump(source), "WordFinder-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void pump(InputStream source) {
+        boolean closed = false;
+        try (InputStream in = source) {
+            while (!Thread.currentThread().isInterrupted()) {
+                Chunk chunk = free.take();
+                int n = 0;
+                int read;
+                while (n < CHUNK_SIZE && (read = in.read(chunk.data, n, CHUNK_SIZE - n)) != -1) {
+                    n += read;
+                }
+                chunk.length = n;
+                if (n > 0) {
+                    full.put(chunk);
+                }
+                if (n < CHUNK_SIZE) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            // прерывание - только из close(): читать конец уже некому
+            closed = true;
+        } catch (IOException e) {
+            failure = e;
+        } catch (Throwable e) {
+            // иначе поток-читатель умрет без END, и читающий будет ждать вечно
+            failure = new IOException(e);
+        } finally {
+            if (!closed) {
+                full.add(END);
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (current == null || position == current.length) {
+            if (!nextChunk()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (current != null) {
+            free.add(current);
+            current = null;
+        }
+        Chunk chunk;
+        try {
+            chunk = full.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (chunk == END) {
+            finished = true;
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+        current = chunk;
+        position = 0;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        reader.interrupt();
+    }
+}
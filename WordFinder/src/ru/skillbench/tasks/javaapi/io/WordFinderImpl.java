@@ -1,21 +1,109 @@
 package ru.skillbench.tasks.javaapi.io;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Stream;
 
 public class WordFinderImpl implements WordFinder{
 
-    private String text;
-    private Set<String> words;
-    private Set<String> foundWords;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Поколение индекса: все, что построил один set-метод. Замена поколения не трогает прежнее,
+     *  поэтому запрос, начатый до замены, спокойно дорабатывает со старым.<br/>
+     * После публикации поколение не меняется, кроме ленивого разбиения текста на слова и одного исключения:
+     *  поколение {@link #watchFilePath(String, Charset)} дополняется на месте, когда в файл дописываются данные
+     *  (множество слов - {@link ConcurrentSkipListSet}). Запрос к такому поколению не ломается, но может увидеть
+     *  часть слов, дописанных во время его выполнения.
+     */
+    private static final class Generation {
+        final String text;
+        final WordIndexFile indexFile;
+        private volatile NavigableSet<String> words;
+
+        Generation(String text, NavigableSet<String> words, WordIndexFile indexFile) {
+            this.text = text;
+            this.words = words;
+            this.indexFile = indexFile;
+        }
+
+        /**
+         * Разбивает текст на слова, если это еще не сделано.
+         */
+        NavigableSet<String> words() {
+            NavigableSet<String> result = words;
+            if (result == null) {
+                synchronized (this) {
+                    result = words;
+                    if (result == null) {
+                        result = new TreeSet<>();
+                        WordTokenizer tokenizer = new WordTokenizer(result);
+                        tokenizer.feed(text);
+                        tokenizer.finish();
+                        words = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Пул потоков-демонов для асинхронной загрузки, создается при первом обращении.
+     */
+    private static final class Loaders {
+        static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "WordFinder-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private interface Loader {
+        Generation load() throws IOException;
+    }
+
+    private final Executor loadExecutor;
+    private volatile Generation generation;
+    private volatile CompletableFuture<WordFinder> loading;
+    private volatile Set<String> foundWords;
+    private long started;
+    private long published;
+
+    public WordFinderImpl() {
+        this.loadExecutor = null;
+    }
+
+    /**
+     * @param loadExecutor Исполнитель, в котором выполняются асинхронные загрузки
+     *                     ({@link #setFilePathAsync(String)} и т.п.) вместо общего пула потоков-демонов
+     * @throws IllegalArgumentException если <code>loadExecutor == null</code>
+     */
+    public WordFinderImpl(Executor loadExecutor) {
+        if (loadExecutor == null) throw new IllegalArgumentException();
+        this.loadExecutor = loadExecutor;
+    }
+
     /**
      * @return Текущий текст для поиска или <code>null</code>,
      * если ни один из set-методов не был выполнен успешно.
      */
     @Override
     public String getText() {
-        return this.text;
+        Generation current = generation;
+        return current == null ? null : current.text;
     }
 
     /**
@@ -27,11 +115,12 @@ public class WordFinderImpl implements WordFinder{
     @Override
     public void setText(String text) {
         if (text == null) throw new IllegalArgumentException();
-        this.text = text;
+        publish(nextTicket(), new Generation(text, null, null));
     }
 
     /**
-     * Считывает текст из указанного потока ввода. Кодировка не важна.
+     * Считывает текст из указанного потока ввода. Кодировка не важна.<br/>
+     * Данные, сжатые gzip или Zstandard, распознаются по сигнатуре и распаковываются на лету.
      *
      * @param is Поток ввода
      * @throws IOException              в случае ошибок при чтении из потока
@@ -41,7 +130,24 @@ public class WordFinderImpl implements WordFinder{
     public void setInputStream(InputStream is) throws IOException {
         if (is == null) throw new IllegalArgumentException();
 
-        try (BufferedInputStream bis = new BufferedInputStream(is);
+        load(() -> readInputStream(is));
+    }
+
+    /**
+     * Асинхронный вариант {@link #setInputStream(InputStream)}: поток читается в отдельном потоке выполнения.
+     *
+     * @return результат, который завершается, когда слова текста готовы к поиску
+     * @throws IllegalArgumentException если <code>is == null</code>
+     * @see #setFilePathAsync(String)
+     */
+    public CompletableFuture<WordFinder> setInputStreamAsync(InputStream is) {
+        if (is == null) throw new IllegalArgumentException();
+
+        return loadAsync(() -> readInputStream(is));
+    }
+
+    private static Generation readInputStream(InputStream is) throws IOException {
+        try (InputStream bis = CompressedInput.open(is);
             ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
 
             byte buf[] = new byte[8192];
@@ -49,17 +155,39 @@ public class WordFinderImpl implements WordFinder{
             while ((n = bis.read(buf)) != -1) {
                 bos.write(buf, 0, n);
             }
-            text = bos.toString();
-        } catch (IOException e) {
-            text = null;
-            words = null;
-            foundWords = null;
-            throw e;
+            return new Generation(bos.toString(), null, null);
         }
     }
 
     /**
-     * Считывает текст из указанного файла. Кодировка не важна.
+     * Считывает текст из указанного потока ввода в заданной кодировке, разбивая его на слова
+     *  по мере поступления байтов.<br/>
+     * Сам текст при этом не сохраняется (в памяти остается только множество слов),
+     *  поэтому после успешного вызова {@link #getText()} возвращает <code>null</code>.<br/>
+     * Данные, сжатые gzip или Zstandard, распознаются по сигнатуре и распаковываются на лету.
+     *
+     * @param is      Поток ввода
+     * @param charset Кодировка текста
+     * @throws IOException              в случае ошибок при чтении из потока
+     * @throws IllegalArgumentException если <code>is == null</code> или <code>charset == null</code>
+     */
+    public void setInputStream(InputStream is, Charset charset) throws IOException {
+        if (is == null || charset == null) throw new IllegalArgumentException();
+
+        load(() -> {
+            try (Reader reader = new InputStreamReader(CompressedInput.open(is), charset)) {
+                NavigableSet<String> index = new TreeSet<>();
+                WordTokenizer tokenizer = new WordTokenizer(index);
+                tokenizer.feed(reader);
+                tokenizer.finish();
+                return new Generation(null, index, null);
+            }
+        });
+    }
+
+    /**
+     * Считывает текст из указанного файла. Кодировка не важна.<br/>
+     * Данные, сжатые gzip или Zstandard, распознаются по сигнатуре и распаковываются на лету.
      *
      * @param filePath Путь к файлу с текстом
      * @throws IOException              в случае ошибок при чтении файла
@@ -69,7 +197,246 @@ public class WordFinderImpl implements WordFinder{
     public void setFilePath(String filePath) throws IOException {
         if (filePath == null) throw new IllegalArgumentException();
 
-        setInputStream(new FileInputStream(filePath));
+        load(() -> readFile(filePath));
+    }
+
+    /**
+     * Асинхронный вариант {@link #setFilePath(String)}: файл читается и разбивается на слова
+     *  в отдельном потоке выполнения, а вызывающий поток сразу получает {@link CompletableFuture}.<br/>
+     * Пока идет загрузка, запросы обслуживаются предыдущим текстом (предыдущим поколением индекса);
+     *  новое поколение подменяет его целиком, когда слова уже готовы к поиску.
+     * Если предыдущего текста нет, {@link #findWordsStartWith(String)} дожидается окончания загрузки.<br/>
+     * Ошибка загрузки передается в результат, а предыдущий текст остается в силе.
+     * Если несколько загрузок идут одновременно, побеждает начатая последней.
+     *
+     * @param filePath Путь к файлу с текстом
+     * @return результат, который завершается этим же объектом, когда слова текста готовы к поиску
+     * @throws IllegalArgumentException если <code>filePath == null</code>
+     */
+    public CompletableFuture<WordFinder> setFilePathAsync(String filePath) {
+        if (filePath == null) throw new IllegalArgumentException();
+
+        return loadAsync(() -> readFile(filePath));
+    }
+
+    private static Generation readFile(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE || CompressedInput.isCompressed(channel)) {
+                return readInputStream(Channels.newInputStream(channel));
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new Generation(Charset.defaultCharset().decode(buffer).toString(), null, null);
+        }
+    }
+
+    /**
+     * Строит множество слов указанного файла, не считывая его текст целиком:
+     *  файл отображается в память, и границы слов ищутся прямо в отображенных байтах.<br/>
+     * При <code>parallelism &gt; 1</code> большой файл делится на участки, которые разбираются параллельно
+     *  (для UTF-8, US-ASCII и ISO-8859-1; файлы в других кодировках разбираются последовательно).<br/>
+     * Сжатый файл (gzip, Zstandard) распаковывается на лету и разбирается последовательно.<br/>
+     * Сам текст не сохраняется, поэтому после успешного вызова {@link #getText()} возвращает <code>null</code>.
+     *
+     * @param filePath    Путь к файлу с текстом
+     * @param charset     Кодировка текста
+     * @param parallelism Число участков файла, разбираемых одновременно
+     * @throws IOException              в случае ошибок при чтении файла
+     * @throws IllegalArgumentException если <code>filePath == null</code>, <code>charset == null</code>
+     *                                  или <code>parallelism &lt; 1</code>
+     */
+    public void setFilePath(String filePath, Charset charset, int parallelism) throws IOException {
+        if (filePath == null || charset == null || parallelism < 1) throw new IllegalArgumentException();
+
+        load(() -> {
+            try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+                return new Generation(null, MappedWordIndexer.index(channel, charset, parallelism), null);
+            }
+        });
+    }
+
+    /**
+     * Строит множество слов указанного файла и следит за файлом через {@link WatchService}:<ul>
+     * <li>если в конец файла дописаны данные, разбираются только новые байты (и последнее слово,
+     *   которое могло быть дописано не до конца), а их слова добавляются в текущее множество на месте
+     *   (без копирования множества, поэтому выполняющийся запрос может увидеть часть новых слов);</li>
+     * <li>если файл перезаписан, множество строится заново в потоке наблюдения и подменяет прежнее целиком,
+     *   так что поиск не ждет перестроения.</li>
+     * </ul>
+     * Дописывание разбирается по байтам только для несжатых файлов в UTF-8, US-ASCII и ISO-8859-1;
+     *  любое изменение других файлов приводит к перестроению.<br/>
+     * Наблюдение прекращается при закрытии возвращенного объекта или после вызова любого другого set-метода.
+     * Если файл временно недоступен (например, удален перед заменой), остается прежнее множество слов.<br/>
+     * Сам текст не сохраняется, поэтому после успешного вызова {@link #getText()} возвращает <code>null</code>.
+     *
+     * @param filePath Путь к файлу с текстом
+     * @param charset  Кодировка текста
+     * @return объект, закрытие которого прекращает наблюдение
+     * @throws IOException              в случае ошибок при чтении файла или подписке на его изменения
+     * @throws IllegalArgumentException если <code>filePath == null</code> или <code>charset == null</code>
+     */
+    public Closeable watchFilePath(String filePath, Charset charset) throws IOException {
+        if (filePath == null || charset == null) throw new IllegalArgumentException();
+
+        Path file = Paths.get(filePath).toAbsolutePath();
+        WatchService service = file.getFileSystem().newWatchService();
+        try {
+            file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            AppendableFileIndex[] index = new AppendableFileIndex[1];
+            Generation owned = load(() -> {
+                index[0] = AppendableFileIndex.build(file, charset);
+                return new Generation(null, index[0].words(), null);
+            });
+            FileWatcher watcher = new FileWatcher(service, file, charset, index[0], owned);
+            Thread thread = new Thread(watcher, "WordFinder-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            return watcher;
+        } catch (IOException | RuntimeException e) {
+            service.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Поток наблюдения за файлом из {@link #watchFilePath(String, Charset)}.
+     */
+    private final class FileWatcher implements Runnable, Closeable {
+        private final WatchService service;
+        private final Path file;
+        private final Charset charset;
+        private AppendableFileIndex index;
+        private Generation owned;
+
+        FileWatcher(WatchService service, Path file, Charset charset, AppendableFileIndex index, Generation owned) {
+            this.service = service;
+            this.file = file;
+            this.charset = charset;
+            this.index = index;
+            this.owned = owned;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    boolean changed = false;
+                    // события, накопившиеся за время разбора, обрабатываются одним обновлением
+                    do {
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                                    || file.getFileName().equals(event.context())) {
+                                changed = true;
+                            }
+                        }
+                        key.reset();
+                    } while ((key = service.poll()) != null);
+
+                    if (changed && !refresh()) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // наблюдение остановлено
+            } finally {
+                try {
+                    service.close();
+                } catch (IOException e) {
+                    // поток наблюдения все равно завершается
+                }
+            }
+        }
+
+        /**
+         * @return <code>false</code>, если после начала наблюдения выполнился другой set-метод
+         */
+        private boolean refresh() {
+            if (generation != owned) {
+                return false;
+            }
+            try {
+                if (!index.update()) {
+                    AppendableFileIndex rebuilt = AppendableFileIndex.build(file, charset);
+                    Generation next = new Generation(null, rebuilt.words(), null);
+                    if (!replace(owned, next)) {
+                        return false;
+                    }
+                    index = rebuilt;
+                    owned = next;
+                }
+            } catch (IOException e) {
+                // файл временно недоступен: остается прежнее множество до следующего изменения
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            service.close();
+        }
+    }
+
+    /**
+     * Строит общее множество слов всех файлов каталога <code>directory</code> (включая подкаталоги),
+     *  относительный путь которых подходит под шаблон <code>glob</code>.<br/>
+     * Файлы читаются в кодировке по умолчанию, параллельно - по числу доступных процессоров.
+     *
+     * @see #setDirectory(Path, String, Charset, int)
+     */
+    public void setDirectory(Path directory, String glob) throws IOException {
+        setDirectory(directory, glob, Charset.defaultCharset(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Строит общее множество слов всех файлов каталога <code>directory</code> (включая подкаталоги),
+     *  относительный путь которых подходит под шаблон <code>glob</code> (синтаксис {@link FileSystem#getPathMatcher(String)}).<br/>
+     * Файлы разбираются одновременно в пуле из <code>parallelism</code> потоков, после чего их слова
+     *  объединяются; {@link #findWordsStartWith(String)} работает так же, как и для одного текста.<br/>
+     * Тексты файлов не сохраняются, поэтому после успешного вызова {@link #getText()} возвращает <code>null</code>.
+     *
+     * @param directory   Каталог с файлами
+     * @param glob        Шаблон относительного пути файла, например <code>"**.txt"</code>;
+     *                    <code>null</code> - все файлы
+     * @param charset     Кодировка файлов
+     * @param parallelism Число файлов, разбираемых одновременно
+     * @throws IOException              в случае ошибок при обходе каталога или чтении файлов
+     * @throws IllegalArgumentException если <code>directory == null</code>, <code>charset == null</code>
+     *                                  или <code>parallelism &lt; 1</code>
+     */
+    public void setDirectory(Path directory, String glob, Charset charset, int parallelism) throws IOException {
+        if (directory == null || charset == null || parallelism < 1) throw new IllegalArgumentException();
+
+        PathMatcher matcher = glob == null ? null : directory.getFileSystem().getPathMatcher("glob:" + glob);
+        load(() -> indexDirectory(directory, matcher, charset, parallelism));
+    }
+
+    private static Generation indexDirectory(Path directory, PathMatcher matcher, Charset charset,
+                                             int parallelism) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Future<Set<String>>> parts = new ArrayList<>();
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                if (!Files.isRegularFile(file) || matcher != null && !matcher.matches(directory.relativize(file))) {
+                    continue;
+                }
+                parts.add(executor.submit(() -> {
+                    Set<String> fileWords = new HashSet<>();
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        MappedWordIndexer.index(channel, charset, fileWords);
+                    }
+                    return fileWords;
+                }));
+            }
+            return new Generation(null, MappedWordIndexer.merge(parts), null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
@@ -89,6 +456,24 @@ public class WordFinderImpl implements WordFinder{
         setInputStream(getClass().getClassLoader().getResourceAsStream(resourceName));
     }
 
+    /**
+     * Асинхронный вариант {@link #setResource(String)}.
+     *
+     * @return результат, который завершается, когда слова текста готовы к поиску;
+     *  если ресурс не найден, результат завершается с {@link FileNotFoundException}
+     * @throws IllegalArgumentException если <code>resourceName == null</code>
+     * @see #setFilePathAsync(String)
+     */
+    public CompletableFuture<WordFinder> setResourceAsync(String resourceName) {
+        if (resourceName == null) throw new IllegalArgumentException();
+
+        return loadAsync(() -> {
+            InputStream is = getClass().getClassLoader().getResourceAsStream(resourceName);
+            if (is == null) throw new FileNotFoundException(resourceName);
+            return readInputStream(is);
+        });
+    }
+
     /**
      * Ищет в тексте все слова, начинающиеся с указанной последовательности символов,
      * без учета их регистра ('А' и 'а' считаются одним и тем же символом). <br/>
@@ -105,18 +490,198 @@ public class WordFinderImpl implements WordFinder{
      */
     @Override
     public Stream<String> findWordsStartWith(String begin) {
-        if (text == null) throw new IllegalStateException();
+        String beginLowerCase = begin == null ? "" : begin.toLowerCase();
+        Generation current = currentGeneration();
+        Set<String> found = current.indexFile != null
+                ? new TreeSet<>(current.indexFile.findWordsStartWith(beginLowerCase))
+                : new TreeSet<>(startingWith(current.words(), beginLowerCase));
+        foundWords = found;
+        return found.stream();
+    }
 
-        Scanner scanner = new Scanner(text);
-        words = new TreeSet<>();
-        while (scanner.hasNext()) {
-            words.add(scanner.next().toLowerCase());
-        }
+    /**
+     * Нечеткий вариант {@link #findWordsStartWith(String)}: ищет слова, начало которых отличается
+     *  от <code>begin</code> не более чем на <code>maxEdits</code> правок (вставка, удаление или замена символа),
+     *  без учета регистра. Например, при <code>maxEdits == 1</code> по началу "fpl" находятся и "follow", и "flow".<br/>
+     * Все варианты начала проверяются за один обход множества слов, а слова с общим началом
+     *  проверяются один раз. Для файла индекса ({@link #setIndexFile(String)}) слова перебираются подряд.<br/>
+     * Результат, как и у {@link #findWordsStartWith(String)}, можно записать через {@link #writeWords(OutputStream)}.
+     *
+     * @param begin    первые символы искомых слов (возможно, с опечатками)
+     * @param maxEdits максимальное число правок
+     * @return слова, начало которых отличается от <code>begin</code> не более чем на <code>maxEdits</code> правок
+     * @throws IllegalArgumentException если <code>maxEdits &lt; 0</code>
+     * @throws IllegalStateException    если нет текста для поиска
+     */
+    public Stream<String> findWordsStartWithFuzzy(String begin, int maxEdits) {
+        if (maxEdits < 0) throw new IllegalArgumentException();
 
-        foundWords = new TreeSet<>();
         String beginLowerCase = begin == null ? "" : begin.toLowerCase();
-        words.stream().filter(w -> w.startsWith(beginLowerCase)).forEach(w -> foundWords.add(w));
-        return foundWords.stream();
+        Generation current = currentGeneration();
+        Set<String> found = new TreeSet<>();
+        if (current.indexFile != null) {
+            FuzzyPrefixSearch.find(current.indexFile.iterator(), beginLowerCase, maxEdits, found);
+        } else {
+            FuzzyPrefixSearch.find(current.words(), beginLowerCase, maxEdits, found);
+        }
+        foundWords = found;
+        return found.stream();
+    }
+
+    /**
+     * Сохраняет множество слов текущего текста в файл индекса ({@link WordIndexFile}),
+     *  который потом можно открыть через {@link #setIndexFile(String)}, не читая исходный текст.
+     *
+     * @param filePath Путь к файлу индекса
+     * @throws IOException              в случае ошибок при записи файла
+     * @throws IllegalArgumentException если <code>filePath == null</code>
+     * @throws IllegalStateException    если нет текста для поиска
+     */
+    public void saveIndex(String filePath) throws IOException {
+        if (filePath == null) throw new IllegalArgumentException();
+
+        Generation current = currentGeneration();
+        if (current.indexFile != null) {
+            WordIndexFile.write(Paths.get(filePath), new TreeSet<>(current.indexFile.findWordsStartWith("")));
+        } else {
+            NavigableSet<String> words = current.words();
+            // множество из watchFilePath дополняется потоком наблюдения, а запись читает его размер
+            // и перебирает его отдельно: записывается снимок
+            WordIndexFile.write(Paths.get(filePath),
+                    words instanceof ConcurrentSkipListSet ? new TreeSet<>(words) : words);
+        }
+    }
+
+    /**
+     * Открывает файл индекса, сохраненный через {@link #saveIndex(String)}. Файл отображается в память,
+     *  и {@link #findWordsStartWith(String)} ищет слова прямо в нем.<br/>
+     * Текст при этом не читается, поэтому после успешного вызова {@link #getText()} возвращает <code>null</code>.
+     *
+     * @param filePath Путь к файлу индекса
+     * @throws IOException              в случае ошибок при чтении или если файл не является индексом слов
+     * @throws IllegalArgumentException если <code>filePath == null</code>
+     */
+    public void setIndexFile(String filePath) throws IOException {
+        if (filePath == null) throw new IllegalArgumentException();
+
+        load(() -> new Generation(null, null, WordIndexFile.open(Paths.get(filePath))));
+    }
+
+    /**
+     * Синхронная загрузка: при ошибке текста для поиска больше нет.
+     * @return загруженное поколение
+     */
+    private Generation load(Loader loader) throws IOException {
+        long ticket = nextTicket();
+        try {
+            Generation loaded = loader.load();
+            publish(ticket, loaded);
+            return loaded;
+        } catch (IOException e) {
+            publish(ticket, null);
+            throw e;
+        }
+    }
+
+    /**
+     * Асинхронная загрузка: новое поколение публикуется, только когда его слова готовы к поиску,
+     *  а при ошибке остается предыдущее.
+     */
+    private CompletableFuture<WordFinder> loadAsync(Loader loader) {
+        long ticket = nextTicket();
+        CompletableFuture<WordFinder> result = new CompletableFuture<>();
+        loading = result;
+        Runnable task = () -> {
+            try {
+                Generation loaded = loader.load();
+                if (loaded.indexFile == null) {
+                    loaded.words();
+                }
+                publish(ticket, loaded);
+                result.complete(this);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        };
+        try {
+            (loadExecutor != null ? loadExecutor : Loaders.EXECUTOR).execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private synchronized long nextTicket() {
+        return ++started;
+    }
+
+    /**
+     * Делает <code>loaded</code> текущим поколением, если после загрузки с номером <code>ticket</code>
+     *  не было опубликовано более поздней.
+     */
+    private synchronized void publish(long ticket, Generation loaded) {
+        if (ticket > published) {
+            published = ticket;
+            generation = loaded;
+            foundWords = null;
+        }
+    }
+
+    /**
+     * Заменяет поколение <code>expected</code> на <code>next</code>, если оно все еще текущее.
+     * @return <code>false</code>, если после <code>expected</code> уже выполнился другой set-метод
+     */
+    private synchronized boolean replace(Generation expected, Generation next) {
+        if (generation != expected) {
+            return false;
+        }
+        generation = next;
+        return true;
+    }
+
+    /**
+     * Возвращает текущее поколение; если его нет, а загрузка еще идет, дожидается ее окончания.
+     * @throws IllegalStateException если нет текста для поиска
+     */
+    private Generation currentGeneration() {
+        Generation current = generation;
+        CompletableFuture<WordFinder> pending;
+        while (current == null && (pending = loading) != null && !pending.isDone()) {
+            try {
+                pending.join();
+            } catch (CompletionException | CancellationException e) {
+                // ошибку загрузки получает тот, кто ее запустил; здесь остается только IllegalStateException
+            }
+            current = generation;
+        }
+        if (current == null) throw new IllegalStateException();
+        return current;
+    }
+
+    /**
+     * Возвращает представление отсортированного множества слов, начинающихся с <code>prefix</code>.
+     */
+    static SortedSet<String> startingWith(NavigableSet<String> words, String prefix) {
+        String upper = upperBound(prefix);
+        if (upper == null) {
+            return words.tailSet(prefix, true);
+        }
+        return words.subSet(prefix, true, upper, false);
+    }
+
+    /**
+     * Возвращает наименьшую строку, которая больше всех строк, начинающихся с <code>prefix</code>,
+     *  или <code>null</code>, если такой строки нет.
+     */
+    static String upperBound(String prefix) {
+        int last = prefix.length() - 1;
+        while (last >= 0 && prefix.charAt(last) == Character.MAX_VALUE) {
+            --last;
+        }
+        if (last < 0) {
+            return null;
+        }
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
     }
 
     /**
@@ -134,13 +699,126 @@ public class WordFinderImpl implements WordFinder{
      */
     @Override
     public void writeWords(OutputStream os) throws IOException {
-        if (foundWords == null) throw new IllegalStateException();
+        writeWords(os, Charset.defaultCharset());
+    }
+
+    /**
+     * То же, что и {@link #writeWords(OutputStream)}, но в заданной кодировке.<br/>
+     * Текст кодируется в буфер и пишется в <code>os</code> крупными порциями.
+     *
+     * @param os      Поток вывода
+     * @param charset Кодировка текста
+     * @throws IOException           в случае ошибок при записи в поток
+     * @throws IllegalStateException если поиск слов не выполнялся
+     */
+    public void writeWords(OutputStream os, Charset charset) throws IOException {
+        if (os == null || charset == null) throw new IllegalArgumentException();
+        Set<String> found = foundWords;
+        if (found == null) throw new IllegalStateException();
+
+        encodeWords(found, charset, ByteBuffer.allocate(WRITE_BUFFER_SIZE),
+                bytes -> os.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()));
+    }
+
+    /**
+     * То же, что и {@link #writeWords(OutputStream)}, но запись идет в канал
+     *  через прямой (direct) буфер, без промежуточного копирования в массив.
+     *
+     * @param channel Канал вывода
+     * @throws IOException           в случае ошибок при записи в канал
+     * @throws IllegalStateException если поиск слов не выполнялся
+     */
+    public void writeWords(WritableByteChannel channel) throws IOException {
+        writeWords(channel, Charset.defaultCharset());
+    }
+
+    /**
+     * То же, что и {@link #writeWords(WritableByteChannel)}, но в заданной кодировке.
+     *
+     * @param channel Канал вывода
+     * @param charset Кодировка текста
+     * @throws IOException           в случае ошибок при записи в канал
+     * @throws IllegalStateException если поиск слов не выполнялся
+     */
+    public void writeWords(WritableByteChannel channel, Charset charset) throws IOException {
+        if (channel == null || charset == null) throw new IllegalArgumentException();
+        Set<String> found = foundWords;
+        if (found == null) throw new IllegalStateException();
+
+        encodeWords(found, charset, ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE), bytes -> {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        });
+    }
+
+    private interface ByteSink {
+        /**
+         * Записывает все байты от position до limit буфера.
+         */
+        void write(ByteBuffer bytes) throws IOException;
+    }
+
+    /**
+     * Кодирует найденные слова, разделенные пробелом, через один и тот же буфер символов и один буфер байтов;
+     *  в <code>sink</code> передается каждый заполненный буфер байтов.
+     */
+    private static void encodeWords(Set<String> words, Charset charset, ByteBuffer bytes,
+                                    ByteSink sink) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(WRITE_BUFFER_SIZE);
+        boolean first = true;
+        for (String word : words) {
+            if (!first) {
+                if (!chars.hasRemaining()) {
+                    encode(encoder, chars, bytes, sink, false);
+                }
+                chars.put(' ');
+            }
+            first = false;
+
+            int from = 0;
+            while (from < word.length()) {
+                if (!chars.hasRemaining()) {
+                    encode(encoder, chars, bytes, sink, false);
+                }
+                int to = Math.min(word.length(), from + chars.remaining());
+                word.getChars(from, to, chars.array(), chars.arrayOffset() + chars.position());
+                chars.position(chars.position() + to - from);
+                from = to;
+            }
+        }
+        encode(encoder, chars, bytes, sink, true);
+        while (encoder.flush(bytes).isOverflow()) {
+            drain(bytes, sink);
+        }
+        drain(bytes, sink);
+    }
+
+    private static void encode(CharsetEncoder encoder, CharBuffer chars, ByteBuffer bytes, ByteSink sink,
+                               boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain(bytes, sink);
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        chars.compact();
+    }
 
-        String[] foundWordsArray = foundWords.toArray(new String[0]);
-        for (int i = 0; i < foundWordsArray.length - 1; ++i) {
-            os.write((foundWordsArray[i] + " ").getBytes());
+    private static void drain(ByteBuffer bytes, ByteSink sink) throws IOException {
+        bytes.flip();
+        if (bytes.hasRemaining()) {
+            sink.write(bytes);
         }
-        os.write(foundWordsArray[foundWordsArray.length - 1].getBytes());
+        bytes.clear();
     }
 
     public static void main(String[] args) throws IOException {
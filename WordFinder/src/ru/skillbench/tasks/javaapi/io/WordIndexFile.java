@@ -0,0 +1,308 @@
+package ru.skillbench.tasks.javaapi.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Отсортированное множество слов, сохраненное в файл, по которому можно искать слова по началу,
+ *  не читая исходный текст.<br/>
+ * <p/>
+ * Формат файла:<ul>
+ * <li>заголовок: сигнатура, версия, число слов, число слов в блоке, число блоков;</li>
+ * <li>блоки по {@link #BLOCK_SIZE} слов в порядке {@link String#compareTo(String)}; слова хранятся
+ *   посимвольно в UTF-8 (каждый <code>char</code> отдельно, как в {@link DataOutput#writeUTF(String)},
+ *   чтобы не терять непарные суррогаты) с префиксным сжатием (front coding): первое слово блока
+ *   целиком, а каждое следующее - как длина общего с предыдущим словом префикса в байтах
+ *   и оставшийся суффикс;</li>
+ * <li>таблица смещений блоков от начала файла.</li>
+ * </ul>
+ * Все числа, кроме заголовка и таблицы смещений, записываются как varint.<br/>
+ * При открытии файл отображается в память, а в куче остаются только первые слова блоков
+ *  (разреженный индекс), по которым двоичным поиском находится блок, с которого начинается просмотр.
+ */
+public final class WordIndexFile {
+    public static final int BLOCK_SIZE = 32;
+
+    private static final int MAGIC = 0x57464958; // "WFIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * 5;
+
+    private final ByteBuffer buffer;
+    private final int wordCount;
+    private final String[] firstWords;
+    private final int[] blockOffsets;
+
+    private WordIndexFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a word index file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported word index version " + buffer.getInt(4));
+        }
+        wordCount = buffer.getInt(8);
+        int blockCount = buffer.getInt(16);
+        int tableOffset = buffer.capacity() - 4 * blockCount;
+        if (blockCount < 0 || wordCount < 0 || tableOffset < HEADER_SIZE) {
+            throw new IOException("Corrupted word index file");
+        }
+
+        firstWords = new String[blockCount];
+        blockOffsets = new int[blockCount];
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < blockCount; ++i) {
+            blockOffsets[i] = buffer.getInt(tableOffset + 4 * i);
+            cursor.seek(blockOffsets[i]);
+            firstWords[i] = cursor.first();
+        }
+    }
+
+    /**
+     * Открывает файл индекса, отображая его в память.
+     * @throws IOException в случае ошибок чтения или если файл не является индексом слов
+     */
+    public static WordIndexFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Word index file is too large: " + size);
+            }
+            return new WordIndexFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Записывает множество слов в файл индекса.
+     * @param words слова, отсортированные в естественном порядке
+     * @throws IllegalArgumentException если множество отсортировано не в естественном порядке
+     */
+    public static void write(Path file, SortedSet<String> words) throws IOException {
+        if (words.comparator() != null) throw new IllegalArgumentException();
+
+        int blockCount = (words.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] offsets = new int[blockCount];
+        try (CountingOutputStream out = new CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(words.size());
+            data.writeInt(BLOCK_SIZE);
+            data.writeInt(blockCount);
+
+            byte[] previous = new byte[0];
+            int i = 0;
+            for (String word : words) {
+                byte[] bytes = encode(word);
+                if (i % BLOCK_SIZE == 0) {
+                    offsets[i / BLOCK_SIZE] = out.position();
+                    writeVarint(out, bytes.length);
+                    out.write(bytes);
+                } else {
+                    int shared = 0;
+                    int max = Math.min(previous.length, bytes.length);
+                    while (shared < max && previous[shared] == bytes[shared]) {
+                        ++shared;
+                    }
+                    writeVarint(out, shared);
+                    writeVarint(out, bytes.length - shared);
+                    out.write(bytes, shared, bytes.length - shared);
+                }
+                previous = bytes;
+                ++i;
+            }
+            for (int offset : offsets) {
+                data.writeInt(offset);
+            }
+        }
+    }
+
+    /**
+     * @return число слов в индексе
+     */
+    public int size() {
+        return wordCount;
+    }
+
+    /**
+     * Находит все слова индекса, начинающиеся с <code>prefix</code> (с учетом регистра).
+     * @return найденные слова в порядке возрастания
+     */
+    public List<String> findWordsStartWith(String prefix) {
+        List<String> result = new ArrayList<>();
+        if (firstWords.length == 0) {
+            return result;
+        }
+        int block = Arrays.binarySearch(firstWords, prefix);
+        if (block < 0) {
+            block = Math.max(0, -block - 2);
+        }
+
+        Cursor cursor = new Cursor();
+        cursor.seek(blockOffsets[block]);
+        int remaining = wordCount - block * BLOCK_SIZE;
+        for (int i = 0; i < remaining; ++i) {
+            String word = i % BLOCK_SIZE == 0 ? cursor.first() : cursor.next();
+            if (word.startsWith(prefix)) {
+                result.add(word);
+            } else if (word.compareTo(prefix) > 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Перебирает все слова индекса в порядке возрастания.
+     */
+    public Iterator<String> iterator() {
+        Cursor cursor = new Cursor();
+        if (firstWords.length > 0) {
+            cursor.seek(blockOffsets[0]);
+        }
+        return new Iterator<String>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < wordCount;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return index++ % BLOCK_SIZE == 0 ? cursor.first() : cursor.next();
+            }
+        };
+    }
+
+    /**
+     * Позиция чтения в блоках; восстанавливает очередное слово по предыдущему.
+     */
+    private class Cursor {
+        private int position;
+        private byte[] word = new byte[64];
+        private int length;
+
+        void seek(int position) {
+            this.position = position;
+        }
+
+        String first() {
+            length = 0;
+            return read(readVarint());
+        }
+
+        String next() {
+            length = readVarint();
+            return read(readVarint());
+        }
+
+        private String read(int suffix) {
+            if (word.length < length + suffix) {
+                word = Arrays.copyOf(word, Math.max(length + suffix, word.length * 2));
+            }
+            for (int i = 0; i < suffix; ++i) {
+                word[length + i] = buffer.get(position + i);
+            }
+            position += suffix;
+            length += suffix;
+            return decode(word, length);
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    private static byte[] encode(String word) {
+        int length = 0;
+        for (int i = 0; i < word.length(); ++i) {
+            char c = word.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        byte[] bytes = new byte[length];
+        int j = 0;
+        for (int i = 0; i < word.length(); ++i) {
+            char c = word.charAt(i);
+            if (c < 0x80) {
+                bytes[j++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[j++] = (byte) (0xC0 | c >> 6);
+                bytes[j++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                bytes[j++] = (byte) (0xE0 | c >> 12);
+                bytes[j++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[j++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return bytes;
+    }
+
+    private static String decode(byte[] bytes, int length) {
+        char[] chars = new char[length];
+        int n = 0;
+        for (int i = 0; i < length; ++n) {
+            int b = bytes[i] & 0xFF;
+            if (b < 0x80) {
+                chars[n] = (char) b;
+                i += 1;
+            } else if (b < 0xE0) {
+                chars[n] = (char) ((b & 0x1F) << 6 | bytes[i + 1] & 0x3F);
+                i += 2;
+            } else {
+                chars[n] = (char) ((b & 0x0F) << 12 | (bytes[i + 1] & 0x3F) << 6 | bytes[i + 2] & 0x3F);
+                i += 3;
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long position;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        int position() throws IOException {
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Word index file is too large: " + position);
+            }
+            return (int) position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++position;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            position += len;
+        }
+    }
+}
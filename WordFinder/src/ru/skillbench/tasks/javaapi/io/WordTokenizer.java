@@ -0,0 +1,87 @@
+package ru.skillbench.tasks.javaapi.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+
+/**
+ * Разбивает текст, поступающий порциями, на слова и складывает их (в нижнем регистре) в коллекцию.<br/>
+ * Разделители те же, что и у {@link java.util.Scanner} по умолчанию: любые символы,
+ *  для которых {@link Character#isWhitespace(char)} возвращает <code>true</code>.<br/>
+ * Слово, разрезанное границей порции, собирается целиком.
+ */
+class WordTokenizer {
+    private final Collection<String> words;
+    private final StringBuilder tail = new StringBuilder();
+
+    WordTokenizer(Collection<String> words) {
+        this.words = words;
+    }
+
+    /**
+     * Читает все символы из <code>reader</code> и разбирает их на слова.
+     * Сам <code>reader</code> не закрывается.
+     */
+    void feed(Reader reader) throws IOException {
+        char[] buf = new char[8192];
+        int n;
+        while ((n = reader.read(buf)) != -1) {
+            feed(buf, 0, n);
+        }
+    }
+
+    void feed(char[] buf, int off, int len) {
+        int end = off + len;
+        int start = off;
+        for (int i = off; i < end; ++i) {
+            if (Character.isWhitespace(buf[i])) {
+                if (i > start || tail.length() > 0) {
+                    emit(buf, start, i);
+                }
+                start = i + 1;
+            }
+        }
+        if (start < end) {
+            tail.append(buf, start, end - start);
+        }
+    }
+
+    void feed(CharSequence chars) {
+        int start = 0;
+        for (int i = 0; i < chars.length(); ++i) {
+            if (Character.isWhitespace(chars.charAt(i))) {
+                if (i > start || tail.length() > 0) {
+                    tail.append(chars, start, i);
+                    flushTail();
+                }
+                start = i + 1;
+            }
+        }
+        if (start < chars.length()) {
+            tail.append(chars, start, chars.length());
+        }
+    }
+
+    /**
+     * Добавляет последнее (не завершенное разделителем) слово, если оно есть.
+     */
+    void finish() {
+        if (tail.length() > 0) {
+            flushTail();
+        }
+    }
+
+    private void emit(char[] buf, int start, int end) {
+        if (tail.length() == 0) {
+            words.add(new String(buf, start, end - start).toLowerCase());
+        } else {
+            tail.append(buf, start, end - start);
+            flushTail();
+        }
+    }
+
+    private void flushTail() {
+        words.add(tail.toString().toLowerCase());
+        tail.setLength(0);
+    }
+}
@@ -0,0 +1,927 @@
+package ru.skillbench.tasks.javaapi.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Распаковывает поток в формате Zstandard (RFC 8878) без внешних библиотек.<br/>
+ * Поддерживаются несколько подряд идущих кадров (frames), пропускаемые кадры (skippable frames)
+ *  и проверка контрольной суммы кадра; словари (dictionaries) не поддерживаются.<br/>
+ * Окно кадра ограничено {@link #MAX_WINDOW_SIZE} байтами, как и по умолчанию в эталонной реализации.
+ */
+final class ZstdInputStream extends InputStream {
+    static final int MAGIC = 0xFD2FB528;
+    static final int MAX_WINDOW_SIZE = 1 << 27;
+
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int MAX_BLOCK_SIZE = 1 << 17;
+
+    private static final int[] LL_BASE = {
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+            16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096,
+            8192, 16384, 32768, 65536};
+    private static final int[] LL_BITS = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
+            13, 14, 15, 16};
+    private static final int[] ML_BASE = {
+            3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+            19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
+            35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+            4099, 8195, 16387, 32771, 65539};
+    private static final int[] ML_BITS = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
+            12, 13, 14, 15, 16};
+
+    private static final FseTable LL_DEFAULT = FseTable.build(new short[]{
+            4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+            2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+            -1, -1, -1, -1}, 36, 6);
+    private static final FseTable ML_DEFAULT = FseTable.build(new short[]{
+            1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+            -1, -1, -1, -1, -1}, 53, 6);
+    private static final FseTable OF_DEFAULT = FseTable.build(new short[]{
+            1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1}, 29, 5);
+
+    private final InputStream in;
+    private final byte[] header = new byte[14];
+    private final byte[] block = new byte[MAX_BLOCK_SIZE];
+    private final byte[] literals = new byte[MAX_BLOCK_SIZE];
+
+    /**
+     * Распакованные данные текущего кадра: окно для ссылок назад и еще не прочитанный хвост.
+     */
+    private byte[] window = new byte[0];
+    private int windowSize;
+    private int position;
+    private int end;
+    private int literalsLength;
+
+    private boolean inFrame;
+    private boolean lastBlock;
+    private boolean checksum;
+    private final XXHash64 hash = new XXHash64();
+    private final int[] reps = new int[3];
+    private FseTable llTable;
+    private FseTable ofTable;
+    private FseTable mlTable;
+    private HuffmanTable huffman;
+
+    ZstdInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (position == end) {
+            if (!decodeNext()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, end - position);
+        System.arraycopy(window, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return end - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Распаковывает очередной блок (или заканчивает/начинает кадр).
+     * @return <code>false</code>, если поток закончился
+     */
+    private boolean decodeNext() throws IOException {
+        if (!inFrame) {
+            if (!readFrameHeader()) {
+                return false;
+            }
+            inFrame = true;
+            lastBlock = false;
+        } else if (lastBlock) {
+            if (checksum) {
+                readFully(header, 0, 4);
+                if (readInt(header, 0) != (int) hash.digest()) {
+                    throw new IOException("Zstandard checksum mismatch");
+                }
+            }
+            inFrame = false;
+        } else {
+            decodeBlock();
+        }
+        return true;
+    }
+
+    private boolean readFrameHeader() throws IOException {
+        while (true) {
+            int first = in.read();
+            if (first == -1) {
+                return false;
+            }
+            header[0] = (byte) first;
+            readFully(header, 1, 3);
+            int magic = readInt(header, 0);
+            if ((magic & 0xFFFFFFF0) == SKIPPABLE_MAGIC) {
+                readFully(header, 0, 4);
+                skipFully(readInt(header, 0) & 0xFFFFFFFFL);
+                continue;
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Not a Zstandard frame");
+            }
+
+            readFully(header, 0, 1);
+            int descriptor = header[0] & 0xFF;
+            int contentSizeFlag = descriptor >>> 6;
+            boolean singleSegment = (descriptor & 0x20) != 0;
+            if ((descriptor & 0x08) != 0) {
+                throw new IOException("Corrupted Zstandard frame header");
+            }
+            checksum = (descriptor & 0x04) != 0;
+            int dictionaryIdSize = new int[]{0, 1, 2, 4}[descriptor & 3];
+            int contentSizeSize = new int[]{singleSegment ? 1 : 0, 2, 4, 8}[contentSizeFlag];
+
+            int size = (singleSegment ? 0 : 1) + dictionaryIdSize + contentSizeSize;
+            readFully(header, 0, size);
+            int p = 0;
+            long frameWindow = 0;
+            if (!singleSegment) {
+                int exponent = (header[p] & 0xFF) >>> 3;
+                int mantissa = header[p] & 7;
+                long base = 1L << (10 + exponent);
+                frameWindow = base + (base >>> 3) * mantissa;
+                ++p;
+            }
+            long dictionaryId = readLong(header, p, dictionaryIdSize);
+            p += dictionaryIdSize;
+            if (dictionaryId != 0) {
+                throw new IOException("Zstandard dictionaries are not supported");
+            }
+            long contentSize = contentSizeSize == 0 ? -1 : readLong(header, p, contentSizeSize);
+            if (contentSizeSize == 2) {
+                contentSize += 256;
+            }
+            if (singleSegment) {
+                frameWindow = contentSize;
+            }
+            if (frameWindow > MAX_WINDOW_SIZE || frameWindow < 0) {
+                throw new IOException("Zstandard window is too large: " + frameWindow);
+            }
+
+            windowSize = (int) frameWindow;
+            long capacity = 2L * windowSize;
+            if (contentSize >= 0 && contentSize < capacity) {
+                capacity = contentSize;
+            }
+            capacity += MAX_BLOCK_SIZE;
+            if (window.length < capacity) {
+                window = new byte[(int) capacity];
+            }
+            position = 0;
+            end = 0;
+            reps[0] = 1;
+            reps[1] = 4;
+            reps[2] = 8;
+            llTable = null;
+            ofTable = null;
+            mlTable = null;
+            huffman = null;
+            hash.reset();
+            return true;
+        }
+    }
+
+    private void decodeBlock() throws IOException {
+        readFully(header, 0, 3);
+        int blockHeader = (header[0] & 0xFF) | (header[1] & 0xFF) << 8 | (header[2] & 0xFF) << 16;
+        lastBlock = (blockHeader & 1) != 0;
+        int type = (blockHeader >>> 1) & 3;
+        int size = blockHeader >>> 3;
+
+        if (end + MAX_BLOCK_SIZE > window.length) {
+            int keep = Math.min(windowSize, end);
+            System.arraycopy(window, end - keep, window, 0, keep);
+            end = keep;
+            if (end + MAX_BLOCK_SIZE > window.length) throw corrupted();
+        }
+        position = end;
+
+        switch (type) {
+            case 0:
+                checkBlockSize(size);
+                readFully(window, end, size);
+                end += size;
+                break;
+            case 1:
+                checkBlockSize(size);
+                readFully(header, 0, 1);
+                Arrays.fill(window, end, end + size, header[0]);
+                end += size;
+                break;
+            case 2:
+                checkBlockSize(size);
+                readFully(block, 0, size);
+                decodeCompressedBlock(size);
+                break;
+            default:
+                throw new IOException("Corrupted Zstandard block");
+        }
+        if (checksum) {
+            hash.update(window, position, end - position);
+        }
+    }
+
+    private void decodeCompressedBlock(int size) throws IOException {
+        int p = decodeLiterals(size);
+        int literalsLength = this.literalsLength;
+
+        if (p >= size) throw corrupted();
+        int sequences = block[p++] & 0xFF;
+        if (sequences >= 128) {
+            if (p >= size) throw corrupted();
+            if (sequences < 255) {
+                sequences = ((sequences - 128) << 8) + (block[p++] & 0xFF);
+            } else {
+                if (p + 1 >= size) throw corrupted();
+                sequences = (block[p] & 0xFF) + ((block[p + 1] & 0xFF) << 8) + 0x7F00;
+                p += 2;
+            }
+        }
+
+        int literal = 0;
+        if (sequences > 0) {
+            if (p >= size) throw corrupted();
+            int modes = block[p++] & 0xFF;
+            if ((modes & 3) != 0) throw corrupted();
+            int[] consumed = new int[1];
+            llTable = table(modes >>> 6, LL_DEFAULT, llTable, p, size, 9, 35, consumed);
+            p += consumed[0];
+            ofTable = table((modes >>> 4) & 3, OF_DEFAULT, ofTable, p, size, 8, 31, consumed);
+            p += consumed[0];
+            mlTable = table((modes >>> 2) & 3, ML_DEFAULT, mlTable, p, size, 9, 52, consumed);
+            p += consumed[0];
+
+            BackwardBits bits = new BackwardBits(block, p, size);
+            int llState = (int) bits.read(llTable.log);
+            int ofState = (int) bits.read(ofTable.log);
+            int mlState = (int) bits.read(mlTable.log);
+            int limit = position + MAX_BLOCK_SIZE;
+
+            for (int i = 0; i < sequences; ++i) {
+                int ofCode = ofTable.symbols[ofState];
+                int mlCode = mlTable.symbols[mlState];
+                int llCode = llTable.symbols[llState];
+                if (ofCode > 31 || mlCode >= ML_BASE.length || llCode >= LL_BASE.length) throw corrupted();
+
+                long offsetValue = (1L << ofCode) + bits.read(ofCode);
+                int matchLength = ML_BASE[mlCode] + (int) bits.read(ML_BITS[mlCode]);
+                int literalLength = LL_BASE[llCode] + (int) bits.read(LL_BITS[llCode]);
+                if (i + 1 < sequences) {
+                    llState = llTable.states[llState] + (int) bits.read(llTable.bits[llState]);
+                    mlState = mlTable.states[mlState] + (int) bits.read(mlTable.bits[mlState]);
+                    ofState = ofTable.states[ofState] + (int) bits.read(ofTable.bits[ofState]);
+                }
+
+                int offset = offset(offsetValue, literalLength);
+                if (literal + literalLength > literalsLength
+                        || end + literalLength + matchLength > limit) throw corrupted();
+                System.arraycopy(literals, literal, window, end, literalLength);
+                literal += literalLength;
+                end += literalLength;
+
+                if (offset <= 0 || offset > end) throw corrupted();
+                int from = end - offset;
+                if (offset >= matchLength) {
+                    System.arraycopy(window, from, window, end, matchLength);
+                    end += matchLength;
+                } else {
+                    for (int j = 0; j < matchLength; ++j) {
+                        window[end++] = window[from + j];
+                    }
+                }
+            }
+            if (!bits.isFinished()) throw corrupted();
+        } else if (p != size) {
+            throw corrupted();
+        }
+
+        int rest = literalsLength - literal;
+        if (end + rest > position + MAX_BLOCK_SIZE) throw corrupted();
+        System.arraycopy(literals, literal, window, end, rest);
+        end += rest;
+    }
+
+    private int offset(long offsetValue, int literalLength) throws IOException {
+        int offset;
+        if (offsetValue > 3) {
+            if (offsetValue - 3 > Integer.MAX_VALUE) throw corrupted();
+            offset = (int) (offsetValue - 3);
+            reps[2] = reps[1];
+            reps[1] = reps[0];
+            reps[0] = offset;
+        } else {
+            int index = (int) offsetValue - 1 + (literalLength == 0 ? 1 : 0);
+            if (index == 0) {
+                offset = reps[0];
+            } else {
+                offset = index == 3 ? reps[0] - 1 : reps[index];
+                if (index != 1) {
+                    reps[2] = reps[1];
+                }
+                reps[1] = reps[0];
+                reps[0] = offset;
+            }
+        }
+        return offset;
+    }
+
+    private FseTable table(int mode, FseTable predefined, FseTable previous, int p, int size,
+                           int maxLog, int maxSymbol, int[] consumed) throws IOException {
+        consumed[0] = 0;
+        switch (mode) {
+            case 0:
+                return predefined;
+            case 1:
+                if (p >= size) throw corrupted();
+                consumed[0] = 1;
+                return FseTable.rle(block[p] & 0xFF);
+            case 2:
+                return FseTable.read(block, p, size, maxLog, maxSymbol, consumed);
+            default:
+                if (previous == null) throw corrupted();
+                return previous;
+        }
+    }
+
+    /**
+     * Распаковывает секцию литералов в {@link #literals}.
+     * @return число байтов блока, занятых секцией
+     */
+    private int decodeLiterals(int size) throws IOException {
+        if (size < 1) throw corrupted();
+        int b0 = block[0] & 0xFF;
+        int type = b0 & 3;
+        int sizeFormat = (b0 >>> 2) & 3;
+
+        if (type < 2) {
+            int headerSize;
+            int regenerated;
+            if ((sizeFormat & 1) == 0) {
+                headerSize = 1;
+                regenerated = b0 >>> 3;
+            } else if (sizeFormat == 1) {
+                headerSize = 2;
+                regenerated = (b0 >>> 4) + (byteAt(1, size) << 4);
+            } else {
+                headerSize = 3;
+                regenerated = (b0 >>> 4) + (byteAt(1, size) << 4) + (byteAt(2, size) << 12);
+            }
+            if (regenerated > MAX_BLOCK_SIZE) throw corrupted();
+            literalsLength = regenerated;
+            if (type == 0) {
+                if (headerSize + regenerated > size) throw corrupted();
+                System.arraycopy(block, headerSize, literals, 0, regenerated);
+                return headerSize + regenerated;
+            }
+            Arrays.fill(literals, 0, regenerated, (byte) byteAt(headerSize, size));
+            return headerSize + 1;
+        }
+
+        int headerSize;
+        int regenerated;
+        int compressed;
+        if (sizeFormat < 2) {
+            headerSize = 3;
+            int c = b0 | byteAt(1, size) << 8 | byteAt(2, size) << 16;
+            regenerated = (c >>> 4) & 0x3FF;
+            compressed = (c >>> 14) & 0x3FF;
+        } else if (sizeFormat == 2) {
+            headerSize = 4;
+            int c = b0 | byteAt(1, size) << 8 | byteAt(2, size) << 16 | byteAt(3, size) << 24;
+            regenerated = (c >>> 4) & 0x3FFF;
+            compressed = (c >>> 18) & 0x3FFF;
+        } else {
+            headerSize = 5;
+            long c = b0 | byteAt(1, size) << 8 | byteAt(2, size) << 16 | (long) byteAt(3, size) << 24
+                    | (long) byteAt(4, size) << 32;
+            regenerated = (int) ((c >>> 4) & 0x3FFFF);
+            compressed = (int) ((c >>> 22) & 0x3FFFF);
+        }
+        int limit = headerSize + compressed;
+        if (regenerated > MAX_BLOCK_SIZE || limit > size) throw corrupted();
+        literalsLength = regenerated;
+
+        int p = headerSize;
+        if (type == 2) {
+            int[] consumed = new int[1];
+            huffman = HuffmanTable.read(block, p, limit, consumed);
+            p += consumed[0];
+        } else if (huffman == null) {
+            throw corrupted();
+        }
+
+        if (sizeFormat == 0) {
+            huffman.decode(block, p, limit, literals, 0, regenerated);
+        } else {
+            if (p + 6 > limit) throw corrupted();
+            int size1 = (block[p] & 0xFF) | (block[p + 1] & 0xFF) << 8;
+            int size2 = (block[p + 2] & 0xFF) | (block[p + 3] & 0xFF) << 8;
+            int size3 = (block[p + 4] & 0xFF) | (block[p + 5] & 0xFF) << 8;
+            p += 6;
+            int segment = (regenerated + 3) / 4;
+            int start2 = p + size1;
+            int start3 = start2 + size2;
+            int start4 = start3 + size3;
+            if (start4 > limit || 3 * segment > regenerated) throw corrupted();
+            huffman.decode(block, p, start2, literals, 0, segment);
+            huffman.decode(block, start2, start3, literals, segment, segment);
+            huffman.decode(block, start3, start4, literals, 2 * segment, segment);
+            huffman.decode(block, start4, limit, literals, 3 * segment, regenerated - 3 * segment);
+        }
+        return limit;
+    }
+
+    private int byteAt(int index, int size) throws IOException {
+        if (index >= size) throw corrupted();
+        return block[index] & 0xFF;
+    }
+
+    private void checkBlockSize(int size) throws IOException {
+        if (size > MAX_BLOCK_SIZE) throw corrupted();
+    }
+
+    private void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = in.read(b, off, len);
+            if (n == -1) {
+                throw new EOFException("Unexpected end of Zstandard stream");
+            }
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("Unexpected end of Zstandard stream");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    private static int readInt(byte[] b, int p) {
+        return (b[p] & 0xFF) | (b[p + 1] & 0xFF) << 8 | (b[p + 2] & 0xFF) << 16 | (b[p + 3] & 0xFF) << 24;
+    }
+
+    private static long readLong(byte[] b, int p, int size) {
+        long value = 0;
+        for (int i = 0; i < size; ++i) {
+            value |= (long) (b[p + i] & 0xFF) << (8 * i);
+        }
+        return value;
+    }
+
+    private static IOException corrupted() {
+        return new IOException("Corrupted Zstandard block");
+    }
+
+    private static int highBit(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Битовый поток, который читается от конца к началу (так записаны FSE- и Huffman-потоки).<br/>
+     * Биты до начала потока считаются нулевыми; их чтение - признак переполнения.
+     */
+    private static final class BackwardBits {
+        private final byte[] data;
+        private final int start;
+        private long position;
+
+        BackwardBits(byte[] data, int start, int end) throws IOException {
+            if (end <= start || data[end - 1] == 0) throw corrupted();
+            this.data = data;
+            this.start = start;
+            this.position = 8L * (end - 1 - start) + highBit(data[end - 1] & 0xFF);
+        }
+
+        long peek(int n) {
+            if (n == 0) {
+                return 0;
+            }
+            long from = position - n;
+            if (from < 0) {
+                if (position <= 0) {
+                    return 0;
+                }
+                return bits(0, (int) position) << -from;
+            }
+            return bits(from, n);
+        }
+
+        long read(int n) {
+            long value = peek(n);
+            position -= n;
+            return value;
+        }
+
+        void skip(int n) {
+            position -= n;
+        }
+
+        boolean isOverflowed() {
+            return position < 0;
+        }
+
+        boolean isFinished() {
+            return position == 0;
+        }
+
+        private long bits(long from, int n) {
+            int index = start + (int) (from >>> 3);
+            int shift = (int) (from & 7);
+            int last = Math.min(index + 8, data.length);
+            long word = 0;
+            for (int i = index; i < last; ++i) {
+                word |= (long) (data[i] & 0xFF) << (8 * (i - index));
+            }
+            return (word >>> shift) & ((1L << n) - 1);
+        }
+    }
+
+    /**
+     * Таблица декодирования FSE (tANS): для каждого состояния - символ, число битов и базовое новое состояние.
+     */
+    private static final class FseTable {
+        final int log;
+        final int[] symbols;
+        final int[] bits;
+        final int[] states;
+
+        private FseTable(int log) {
+            this.log = log;
+            symbols = new int[1 << log];
+            bits = new int[1 << log];
+            states = new int[1 << log];
+        }
+
+        static FseTable rle(int symbol) {
+            FseTable table = new FseTable(0);
+            table.symbols[0] = symbol;
+            return table;
+        }
+
+        /**
+         * Читает описание распределения вероятностей (FSE table description) и строит по нему таблицу.
+         */
+        static FseTable read(byte[] data, int p, int limit, int maxLog, int maxSymbol,
+                             int[] consumed) throws IOException {
+            ForwardBits in = new ForwardBits(data, p, limit);
+            int log = (int) in.read(4) + 5;
+            if (log > maxLog) throw corrupted();
+
+            short[] counts = new short[maxSymbol + 1];
+            int remaining = (1 << log) + 1;
+            int threshold = 1 << log;
+            int nbBits = log + 1;
+            int symbol = 0;
+            boolean previousZero = false;
+            while (remaining > 1 && symbol <= maxSymbol) {
+                if (previousZero) {
+                    int repeat;
+                    do {
+                        repeat = (int) in.read(2);
+                        symbol += repeat;
+                    } while (repeat == 3);
+                    if (symbol > maxSymbol) throw corrupted();
+                }
+                int max = (2 * threshold - 1) - remaining;
+                int count;
+                if ((int) in.peek(nbBits - 1) < max) {
+                    count = (int) in.read(nbBits - 1);
+                } else {
+                    count = (int) in.read(nbBits);
+                    if (count >= threshold) {
+                        count -= max;
+                    }
+                }
+                --count;
+                remaining -= count < 0 ? -count : count;
+                counts[symbol++] = (short) count;
+                previousZero = count == 0;
+                while (remaining > 1 && remaining < threshold) {
+                    --nbBits;
+                    threshold >>= 1;
+                }
+            }
+            if (remaining != 1 || in.position() > 8L * (limit - p)) throw corrupted();
+            consumed[0] = (int) ((in.position() + 7) >>> 3);
+            return build(counts, symbol, log);
+        }
+
+        static FseTable build(short[] counts, int symbolCount, int log) {
+            FseTable table = new FseTable(log);
+            int size = 1 << log;
+            int high = size - 1;
+            int[] next = new int[symbolCount];
+            for (int s = 0; s < symbolCount; ++s) {
+                if (counts[s] == -1) {
+                    table.symbols[high--] = s;
+                    next[s] = 1;
+                } else {
+                    next[s] = counts[s];
+                }
+            }
+            int step = (size >>> 1) + (size >>> 3) + 3;
+            int mask = size - 1;
+            int position = 0;
+            for (int s = 0; s < symbolCount; ++s) {
+                for (int i = 0; i < counts[s]; ++i) {
+                    table.symbols[position] = s;
+                    do {
+                        position = (position + step) & mask;
+                    } while (position > high);
+                }
+            }
+            for (int u = 0; u < size; ++u) {
+                int state = next[table.symbols[u]]++;
+                table.bits[u] = log - highBit(state);
+                table.states[u] = (state << table.bits[u]) - size;
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Битовый поток, который читается от начала (младшие биты байта - первыми).
+     */
+    private static final class ForwardBits {
+        private final byte[] data;
+        private final int start;
+        private final int end;
+        private long position;
+
+        ForwardBits(byte[] data, int start, int end) {
+            this.data = data;
+            this.start = start;
+            this.end = end;
+        }
+
+        long peek(int n) {
+            long value = 0;
+            for (int i = 0; i < n; ++i) {
+                long bit = position + i;
+                int index = start + (int) (bit >>> 3);
+                if (index < end && (data[index] >>> (bit & 7) & 1) != 0) {
+                    value |= 1L << i;
+                }
+            }
+            return value;
+        }
+
+        long read(int n) {
+            long value = peek(n);
+            position += n;
+            return value;
+        }
+
+        long position() {
+            return position;
+        }
+    }
+
+    /**
+     * Таблица декодирования кодов Хаффмана для литералов: индекс - очередные <code>maxBits</code> битов потока.
+     */
+    private static final class HuffmanTable {
+        private static final int MAX_BITS = 11;
+
+        private final int maxBits;
+        private final byte[] symbols;
+        private final byte[] lengths;
+
+        private HuffmanTable(int maxBits) {
+            this.maxBits = maxBits;
+            symbols = new byte[1 << maxBits];
+            lengths = new byte[1 << maxBits];
+        }
+
+        static HuffmanTable read(byte[] data, int p, int limit, int[] consumed) throws IOException {
+            if (p >= limit) throw corrupted();
+            int header = data[p] & 0xFF;
+            int[] weights = new int[256];
+            int count;
+            if (header < 128) {
+                int end = p + 1 + header;
+                if (end > limit) throw corrupted();
+                int[] tableSize = new int[1];
+                FseTable table = FseTable.read(data, p + 1, end, 6, 255, tableSize);
+                BackwardBits bits = new BackwardBits(data, p + 1 + tableSize[0], end);
+                int state1 = (int) bits.read(table.log);
+                int state2 = (int) bits.read(table.log);
+                count = 0;
+                while (true) {
+                    if (count + 2 > 255) throw corrupted();
+                    weights[count++] = table.symbols[state1];
+                    state1 = table.states[state1] + (int) bits.read(table.bits[state1]);
+                    if (bits.isOverflowed()) {
+                        weights[count++] = table.symbols[state2];
+                        break;
+                    }
+                    weights[count++] = table.symbols[state2];
+                    if (count + 1 > 255) throw corrupted();
+                    state2 = table.states[state2] + (int) bits.read(table.bits[state2]);
+                    if (bits.isOverflowed()) {
+                        weights[count++] = table.symbols[state1];
+                        break;
+                    }
+                }
+                consumed[0] = 1 + header;
+            } else {
+                count = header - 127;
+                int size = (count + 1) / 2;
+                if (p + 1 + size > limit) throw corrupted();
+                for (int i = 0; i < count; ++i) {
+                    int b = data[p + 1 + i / 2] & 0xFF;
+                    weights[i] = i % 2 == 0 ? b >>> 4 : b & 0xF;
+                }
+                consumed[0] = 1 + size;
+            }
+
+            int total = 0;
+            for (int i = 0; i < count; ++i) {
+                if (weights[i] > MAX_BITS) throw corrupted();
+                if (weights[i] > 0) {
+                    total += 1 << (weights[i] - 1);
+                }
+            }
+            if (total == 0) throw corrupted();
+            int maxBits = highBit(total) + 1;
+            int leftover = (1 << maxBits) - total;
+            if (maxBits > MAX_BITS || Integer.bitCount(leftover) != 1 || count >= 256) throw corrupted();
+            weights[count++] = highBit(leftover) + 1;
+
+            HuffmanTable table = new HuffmanTable(maxBits);
+            int[] rankStart = new int[maxBits + 2];
+            for (int i = 0; i < count; ++i) {
+                ++rankStart[weights[i]];
+            }
+            int next = 0;
+            for (int w = 1; w <= maxBits; ++w) {
+                int current = next;
+                next += rankStart[w] << (w - 1);
+                rankStart[w] = current;
+            }
+            for (int s = 0; s < count; ++s) {
+                int w = weights[s];
+                if (w == 0) {
+                    continue;
+                }
+                int length = 1 << (w - 1);
+                int from = rankStart[w];
+                Arrays.fill(table.symbols, from, from + length, (byte) s);
+                Arrays.fill(table.lengths, from, from + length, (byte) (maxBits + 1 - w));
+                rankStart[w] += length;
+            }
+            return table;
+        }
+
+        void decode(byte[] data, int start, int end, byte[] out, int off, int count) throws IOException {
+            BackwardBits bits = new BackwardBits(data, start, end);
+            for (int i = 0; i < count; ++i) {
+                int index = (int) bits.peek(maxBits);
+                out[off + i] = symbols[index];
+                bits.skip(lengths[index]);
+            }
+            if (!bits.isFinished()) throw corrupted();
+        }
+    }
+
+    /**
+     * Потоковое вычисление xxHash64 (seed = 0): младшие 32 бита - контрольная сумма кадра Zstandard.
+     */
+    private static final class XXHash64 {
+        private static final long P1 = 0x9E3779B185EBCA87L;
+        private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long P3 = 0x165667B19E3779F9L;
+        private static final long P4 = 0x85EBCA77C2B2AE63L;
+        private static final long P5 = 0x27D4EB2F165667C5L;
+
+        private final byte[] stripe = new byte[32];
+        private int buffered;
+        private long total;
+        private long v1;
+        private long v2;
+        private long v3;
+        private long v4;
+
+        void reset() {
+            buffered = 0;
+            total = 0;
+            v1 = P1 + P2;
+            v2 = P2;
+            v3 = 0;
+            v4 = -P1;
+        }
+
+        void update(byte[] b, int off, int len) {
+            total += len;
+            if (buffered > 0) {
+                int n = Math.min(len, 32 - buffered);
+                System.arraycopy(b, off, stripe, buffered, n);
+                buffered += n;
+                off += n;
+                len -= n;
+                if (buffered < 32) {
+                    return;
+                }
+                consume(stripe, 0);
+                buffered = 0;
+            }
+            while (len >= 32) {
+                consume(b, off);
+                off += 32;
+                len -= 32;
+            }
+            System.arraycopy(b, off, stripe, 0, len);
+            buffered = len;
+        }
+
+        long digest() {
+            long h;
+            if (total >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = merge(h, v1);
+                h = merge(h, v2);
+                h = merge(h, v3);
+                h = merge(h, v4);
+            } else {
+                h = P5;
+            }
+            h += total;
+            int p = 0;
+            for (; p + 8 <= buffered; p += 8) {
+                h ^= round(0, readLong(stripe, p, 8));
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+            }
+            if (p + 4 <= buffered) {
+                h ^= (readInt(stripe, p) & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+                p += 4;
+            }
+            for (; p < buffered; ++p) {
+                h ^= (stripe[p] & 0xFF) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+            }
+            h ^= h >>> 33;
+            h *= P2;
+            h ^= h >>> 29;
+            h *= P3;
+            h ^= h >>> 32;
+            return h;
+        }
+
+        private void consume(byte[] b, int off) {
+            v1 = round(v1, readLong(b, off, 8));
+            v2 = round(v2, readLong(b, off + 8, 8));
+            v3 = round(v3, readLong(b, off + 16, 8));
+            v4 = round(v4, readLong(b, off + 24, 8));
+        }
+
+        private static long round(long acc, long input) {
+            return Long.rotateLeft(acc + input * P2, 31) * P1;
+        }
+
+        private static long merge(long h, long v) {
+            return (h ^ round(0, v)) * P1 + P4;
+        }
+    }
+}